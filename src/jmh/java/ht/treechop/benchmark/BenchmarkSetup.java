@@ -0,0 +1,53 @@
+package ht.treechop.benchmark;
+
+import com.electronwill.nightconfig.core.CommentedConfig;
+import com.google.common.collect.ImmutableSet;
+import ht.treechop.common.config.ConfigHandler;
+import ht.treechop.common.util.BlockClassifier;
+import net.minecraft.block.Block;
+import net.minecraft.block.Blocks;
+import net.minecraft.tags.ITag;
+import net.minecraft.tags.Tag;
+import net.minecraft.util.registry.Bootstrap;
+
+/**
+ * Prepares the game registries, config and block tags that TreeChop needs, without starting the game.
+ */
+public class BenchmarkSetup {
+
+    private static boolean done = false;
+
+    public static synchronized void init() {
+        if (done) {
+            return;
+        }
+
+        Bootstrap.register();
+
+        CommentedConfig config = CommentedConfig.inMemory();
+        ConfigHandler.COMMON_SPEC.correct(config);
+        ConfigHandler.COMMON_SPEC.setConfig(config);
+        ConfigHandler.onReload();
+
+        ITag<Block> logs = Tag.getTagFromContents(ImmutableSet.of(
+                Blocks.OAK_LOG,
+                Blocks.DARK_OAK_LOG,
+                Blocks.JUNGLE_LOG,
+                Blocks.MUSHROOM_STEM,
+                SyntheticTrees.CHOPPED_LOG
+        ));
+        ITag<Block> leaves = Tag.getTagFromContents(ImmutableSet.of(
+                Blocks.OAK_LEAVES,
+                Blocks.DARK_OAK_LEAVES,
+                Blocks.JUNGLE_LEAVES,
+                Blocks.RED_MUSHROOM_BLOCK
+        ));
+
+        ConfigHandler.blockTagForDetectingLogs = logs;
+        ConfigHandler.blockTagForDetectingLeaves = leaves;
+        BlockClassifier.update(logs, leaves, ConfigHandler.ignorePersistentLeaves);
+
+        done = true;
+    }
+
+}
@@ -0,0 +1,188 @@
+package ht.treechop.benchmark;
+
+import ht.treechop.common.block.ChoppedLogBlock;
+import net.minecraft.block.AbstractBlock;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.HugeMushroomBlock;
+import net.minecraft.block.SoundType;
+import net.minecraft.block.material.Material;
+import net.minecraft.block.material.MaterialColor;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.function.Function;
+
+/**
+ * Builds worlds containing simplified versions of the trees that TreeChop has to deal with.
+ */
+public class SyntheticTrees {
+
+    /**
+     * Stands in for {@code treechop:chopped_log}, which is not registered when benchmarking
+     */
+    public static final Block CHOPPED_LOG = new ChoppedLogBlock(
+            AbstractBlock.Properties.create(Material.WOOD, MaterialColor.WOOD)
+                    .hardnessAndResistance(2.0F)
+                    .sound(SoundType.WOOD)
+    );
+
+    public enum Scenario {
+        OAK(world -> {
+            oak(world, 0, 0);
+            return new BlockPos(0, SyntheticWorld.GROUND_Y, 0);
+        }),
+        DARK_OAK(world -> {
+            darkOak(world, 0, 0);
+            return new BlockPos(0, SyntheticWorld.GROUND_Y, 0);
+        }),
+        JUNGLE(world -> {
+            megaJungle(world, 0, 0);
+            return new BlockPos(0, SyntheticWorld.GROUND_Y, 0);
+        }),
+        MUSHROOM(world -> {
+            redMushroom(world, 0, 0);
+            return new BlockPos(0, SyntheticWorld.GROUND_Y, 0);
+        }),
+        FOREST(world -> {
+            for (int x = -24; x <= 24; x += 4) {
+                for (int z = -24; z <= 24; z += 4) {
+                    oak(world, x + ((z / 4) & 1), z);
+                }
+            }
+            return new BlockPos(0, SyntheticWorld.GROUND_Y, 0);
+        });
+
+        private final Function<SyntheticWorld, BlockPos> builder;
+
+        Scenario(Function<SyntheticWorld, BlockPos> builder) {
+            this.builder = builder;
+        }
+
+        /**
+         * Fills {@code world} with this scenario's trees
+         * @return the position of the bottom log of the tree to chop
+         */
+        public BlockPos build(SyntheticWorld world) {
+            BlockPos base = builder.apply(world);
+            world.updateLeavesDistances();
+            return base;
+        }
+    }
+
+    public static void oak(SyntheticWorld world, int x, int z) {
+        BlockState log = Blocks.OAK_LOG.getDefaultState();
+        BlockState leaves = Blocks.OAK_LEAVES.getDefaultState();
+        int y0 = SyntheticWorld.GROUND_Y;
+        int height = 5;
+
+        for (int dy = height - 2; dy <= height + 1; ++dy) {
+            int radius = (dy < height) ? 2 : 1;
+            for (int dx = -radius; dx <= radius; ++dx) {
+                for (int dz = -radius; dz <= radius; ++dz) {
+                    boolean corner = Math.abs(dx) == radius && Math.abs(dz) == radius;
+                    if (!corner || (radius == 2 && dy == height - 2)) {
+                        world.setIfAir(x + dx, y0 + dy, z + dz, leaves);
+                    }
+                }
+            }
+        }
+
+        for (int dy = 0; dy < height; ++dy) {
+            world.set(x, y0 + dy, z, log);
+        }
+    }
+
+    public static void darkOak(SyntheticWorld world, int x, int z) {
+        BlockState log = Blocks.DARK_OAK_LOG.getDefaultState();
+        BlockState leaves = Blocks.DARK_OAK_LEAVES.getDefaultState();
+        int y0 = SyntheticWorld.GROUND_Y;
+        int height = 7;
+
+        for (int dy = height - 2; dy <= height; ++dy) {
+            int radius = (dy < height) ? 3 : 2;
+            for (int dx = -radius; dx <= radius + 1; ++dx) {
+                for (int dz = -radius; dz <= radius + 1; ++dz) {
+                    world.setIfAir(x + dx, y0 + dy, z + dz, leaves);
+                }
+            }
+        }
+
+        for (int dy = 0; dy < height; ++dy) {
+            world.set(x, y0 + dy, z, log);
+            world.set(x + 1, y0 + dy, z, log);
+            world.set(x, y0 + dy, z + 1, log);
+            world.set(x + 1, y0 + dy, z + 1, log);
+        }
+
+        // Branches
+        world.set(x - 1, y0 + height - 3, z, log);
+        world.set(x + 2, y0 + height - 2, z + 1, log);
+    }
+
+    public static void megaJungle(SyntheticWorld world, int x, int z) {
+        BlockState log = Blocks.JUNGLE_LOG.getDefaultState();
+        BlockState leaves = Blocks.JUNGLE_LEAVES.getDefaultState();
+        int y0 = SyntheticWorld.GROUND_Y;
+        int height = 30;
+
+        leavesBlob(world, x, y0 + height, z, 4, leaves);
+
+        for (int dy = 8; dy < height - 4; dy += 5) {
+            int signX = ((dy / 5) & 1) == 0 ? -1 : 1;
+            int signZ = ((dy / 5) & 2) == 0 ? -1 : 1;
+            int branchX = x + (signX < 0 ? 0 : 1);
+            int branchZ = z + (signZ < 0 ? 0 : 1);
+            for (int i = 1; i <= 3; ++i) {
+                world.set(branchX + signX * i, y0 + dy + i, branchZ + signZ * i, log);
+            }
+            leavesBlob(world, branchX + signX * 3, y0 + dy + 4, branchZ + signZ * 3, 2, leaves);
+        }
+
+        for (int dy = 0; dy < height; ++dy) {
+            world.set(x, y0 + dy, z, log);
+            world.set(x + 1, y0 + dy, z, log);
+            world.set(x, y0 + dy, z + 1, log);
+            world.set(x + 1, y0 + dy, z + 1, log);
+        }
+    }
+
+    public static void redMushroom(SyntheticWorld world, int x, int z) {
+        BlockState stem = Blocks.MUSHROOM_STEM.getDefaultState()
+                .with(HugeMushroomBlock.UP, false)
+                .with(HugeMushroomBlock.DOWN, false);
+        BlockState cap = Blocks.RED_MUSHROOM_BLOCK.getDefaultState();
+        int y0 = SyntheticWorld.GROUND_Y;
+        int height = 6;
+
+        for (int dy = height - 3; dy <= height; ++dy) {
+            int radius = (dy < height) ? 2 : 1;
+            for (int dx = -radius; dx <= radius; ++dx) {
+                for (int dz = -radius; dz <= radius; ++dz) {
+                    boolean edge = Math.abs(dx) == radius || Math.abs(dz) == radius;
+                    boolean corner = Math.abs(dx) == radius && Math.abs(dz) == radius;
+                    if ((dy == height || edge) && !corner) {
+                        world.setIfAir(x + dx, y0 + dy, z + dz, cap);
+                    }
+                }
+            }
+        }
+
+        for (int dy = 0; dy < height; ++dy) {
+            world.set(x, y0 + dy, z, stem);
+        }
+    }
+
+    private static void leavesBlob(SyntheticWorld world, int x, int y, int z, int radius, BlockState leaves) {
+        for (int dx = -radius; dx <= radius; ++dx) {
+            for (int dy = -1; dy <= 1; ++dy) {
+                for (int dz = -radius; dz <= radius; ++dz) {
+                    if (dx * dx + dz * dz + dy * dy * radius <= radius * radius) {
+                        world.setIfAir(x + dx, y + dy, z + dz, leaves);
+                    }
+                }
+            }
+        }
+    }
+
+}
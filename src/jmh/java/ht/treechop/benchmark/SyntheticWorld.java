@@ -0,0 +1,77 @@
+package ht.treechop.benchmark;
+
+import ht.treechop.common.util.BlockNeighbors;
+import ht.treechop.common.util.ChopUtil;
+import ht.treechop.common.util.IBlockStateReader;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.LeavesBlock;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * An in-memory world of block states for running benchmarks without a Minecraft server. Everything below
+ * {@link #GROUND_Y} is dirt and everything else is air unless set.
+ */
+public class SyntheticWorld implements IBlockStateReader {
+
+    public static final int GROUND_Y = 64;
+
+    private static final BlockState AIR = Blocks.AIR.getDefaultState();
+    private static final BlockState DIRT = Blocks.DIRT.getDefaultState();
+    private static final int MAX_LEAVES_DISTANCE = 7;
+
+    private final Long2ObjectOpenHashMap<BlockState> states = new Long2ObjectOpenHashMap<>();
+
+    @Override
+    public BlockState getBlockState(long pos) {
+        BlockState blockState = states.get(pos);
+        if (blockState != null) {
+            return blockState;
+        } else {
+            return (BlockPos.unpackY(pos) < GROUND_Y) ? DIRT : AIR;
+        }
+    }
+
+    public void set(int x, int y, int z, BlockState blockState) {
+        states.put(BlockPos.pack(x, y, z), blockState);
+    }
+
+    public void setIfAir(int x, int y, int z, BlockState blockState) {
+        if (getBlockState(BlockPos.pack(x, y, z)).isAir()) {
+            set(x, y, z, blockState);
+        }
+    }
+
+    /**
+     * Sets the {@link LeavesBlock#DISTANCE} of all leaves to their distance from the nearest log, as the game would.
+     */
+    public void updateLeavesDistances() {
+        LongOpenHashSet visited = new LongOpenHashSet();
+        LongArrayFIFOQueue frontier = new LongArrayFIFOQueue();
+
+        states.forEach((pos, blockState) -> {
+            if (ChopUtil.isBlockALog(blockState)) {
+                visited.add((long) pos);
+                frontier.enqueue(pos);
+            }
+        });
+
+        for (int distance = 1; distance <= MAX_LEAVES_DISTANCE && !frontier.isEmpty(); ++distance) {
+            for (int i = frontier.size(); i > 0; --i) {
+                long pos = frontier.dequeueLong();
+                for (int j = 0, n = BlockNeighbors.ADJACENTS.size(); j < n; ++j) {
+                    long neighbor = BlockNeighbors.ADJACENTS.offset(pos, j);
+                    BlockState blockState = getBlockState(neighbor);
+                    if (blockState.getBlock() instanceof LeavesBlock && visited.add(neighbor)) {
+                        states.put(neighbor, blockState.with(LeavesBlock.DISTANCE, distance));
+                        frontier.enqueue(neighbor);
+                    }
+                }
+            }
+        }
+    }
+
+}
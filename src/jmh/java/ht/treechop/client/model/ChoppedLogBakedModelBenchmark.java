@@ -0,0 +1,75 @@
+package ht.treechop.client.model;
+
+import ht.treechop.benchmark.BenchmarkSetup;
+import ht.treechop.common.properties.ChoppedLogShape;
+import net.minecraft.client.renderer.model.BakedQuad;
+import net.minecraft.client.renderer.texture.TextureAtlasSprite;
+import net.minecraft.util.Direction;
+import net.minecraftforge.client.model.data.IModelData;
+import net.minecraftforge.client.model.data.ModelDataMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChoppedLogBakedModelBenchmark {
+
+    @Param({"PILLAR_Y", "CORNER_NW", "END_N", "SIDE_U"})
+    public ChoppedLogShape shape;
+
+    @Param({"1", "4", "7"})
+    public int chops;
+
+    @Param({"false", "true"})
+    public boolean withSolidSides;
+
+    private final Random random = new Random(0);
+    private ChoppedLogBakedModel model;
+    private IModelData modelData;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        BenchmarkSetup.init();
+
+        // Quads only copy the sprite's UVs, so an uninitialized sprite is enough without a texture atlas
+        Field unsafeField = Unsafe.class.getDeclaredField("theUnsafe");
+        unsafeField.setAccessible(true);
+        TextureAtlasSprite sprite = (TextureAtlasSprite) ((Unsafe) unsafeField.get(null)).allocateInstance(TextureAtlasSprite.class);
+
+        model = new ChoppedLogBakedModel(null, sprite, false);
+        modelData = new ModelDataMap.Builder()
+                .withInitial(ChoppedLogBakedModel.SHAPE, shape)
+                .withInitial(ChoppedLogBakedModel.CHOPS, chops)
+                .withInitial(ChoppedLogBakedModel.SOLID_SIDES, withSolidSides
+                        ? EnumSet.of(Direction.NORTH, Direction.EAST)
+                        : Collections.emptySet())
+                .build();
+    }
+
+    @Benchmark
+    public List<BakedQuad> getQuads() {
+        return model.getQuads(null, null, random, modelData);
+    }
+
+}
@@ -0,0 +1,42 @@
+package ht.treechop.common.config;
+
+import ht.treechop.benchmark.BenchmarkSetup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChopCountingBenchmark {
+
+    @Param
+    public ChopCountingAlgorithm algorithm;
+
+    @Param({"2", "16", "128", "1024"})
+    public int numBlocks;
+
+    @Setup
+    public void setup() {
+        BenchmarkSetup.init();
+    }
+
+    @Benchmark
+    public int calculate() {
+        return algorithm.calculate(numBlocks);
+    }
+
+}
@@ -0,0 +1,98 @@
+package ht.treechop.common.util;
+
+import ht.treechop.benchmark.BenchmarkSetup;
+import ht.treechop.benchmark.SyntheticTrees;
+import ht.treechop.benchmark.SyntheticWorld;
+import ht.treechop.common.block.ChoppedLogBlock;
+import ht.treechop.common.config.ConfigHandler;
+import ht.treechop.common.properties.BlockStateProperties;
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures tree detection and the chopping decisions made for a single chop. The flood fill that replaced
+ * {@code getConnectedBlocks} is measured on its own by {@link #floodFillAdjacents}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChopUtilBenchmark {
+
+    @Param
+    public SyntheticTrees.Scenario scenario;
+
+    @Param({"false", "true"})
+    public boolean followLeavesDistances;
+
+    private SyntheticWorld world;
+    private SyntheticWorld stumpWorld;
+    private BlockPos target;
+    private Set<BlockPos> treeBlocks;
+    private int numChopsToFell;
+
+    @Setup
+    public void setup() {
+        BenchmarkSetup.init();
+        ConfigHandler.followLeavesDistances = followLeavesDistances;
+
+        world = new SyntheticWorld();
+        target = scenario.build(world);
+        treeBlocks = ChopUtil.scanTreeBlocks(world, target, pos -> ChopUtil.isBlockALog(world, pos), new AtomicBoolean());
+        numChopsToFell = ChopUtil.numChopsToFell(treeBlocks.size());
+
+        // The chopped log block is not registered, so gathering chops starts from a stump that was already chopped
+        stumpWorld = new SyntheticWorld();
+        scenario.build(stumpWorld);
+        stumpWorld.set(target.getX(), target.getY(), target.getZ(), SyntheticTrees.CHOPPED_LOG.getDefaultState()
+                .with(BlockStateProperties.CHOPPED_LOG_SHAPE, ChoppedLogBlock.getPlacementShape(stumpWorld, target)));
+    }
+
+    @Benchmark
+    public Set<BlockPos> scanTreeBlocks() {
+        return ChopUtil.scanTreeBlocks(world, target, pos -> ChopUtil.isBlockALog(world, pos), new AtomicBoolean());
+    }
+
+    @Benchmark
+    public int floodFillAdjacents() {
+        try (FloodFill fill = FloodFill.acquire()) {
+            fill.add(target);
+            fill.search(pos -> BlockNeighbors.ADJACENTS, (pos, depth) -> ChopUtil.isBlockALog(world, pos), Integer.MAX_VALUE);
+            return fill.size();
+        }
+    }
+
+    @Benchmark
+    public List<BlockPos> getTreeLeaves() {
+        return ChopUtil.getTreeLeaves(world, treeBlocks);
+    }
+
+    @Benchmark
+    public ChopResult chopTreeFelling() {
+        return ChopUtil.chopTree(null, world, target, new HashSet<>(treeBlocks), numChopsToFell);
+    }
+
+    @Benchmark
+    public ChopResult chopTreeGathering() {
+        return ChopUtil.chopTree(null, stumpWorld, target, new HashSet<>(treeBlocks), 1);
+    }
+
+}
@@ -0,0 +1,263 @@
+package ht.treechop.client;
+
+import ht.treechop.TreeChopMod;
+import ht.treechop.common.config.ConfigHandler;
+import ht.treechop.common.util.ChopUtil;
+import ht.treechop.common.util.SnapshotBlockStateReader;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Remembers which trees the chopping indicator has detected, so that looking across a tree does not detect it again
+ * for every block. The whole tree is found once, and every one of its logs maps to the same result.
+ * <p>
+ * The client is not told about neighbor updates, so instead a cached tree is checked against the world at most once
+ * per tick and dropped if any of its logs changed. Trees are also dropped after a few seconds to pick up logs that
+ * were added next to them.
+ */
+@EventBusSubscriber(modid = TreeChopMod.MOD_ID, bus = EventBusSubscriber.Bus.FORGE, value = Dist.CLIENT)
+public class ClientTreeCache {
+
+    private static final int MAX_TREE_AGE_TICKS = 100;
+    private static final int MAX_NUM_CACHED_BLOCKS = 65536;
+    private static final int MAX_NUM_DETECTION_ROUNDS = 16;
+    private static final int SNAPSHOT_SECTION_BITS = 3;
+
+    private static final Long2ObjectOpenHashMap<Tree> trees = new Long2ObjectOpenHashMap<>();
+    private static long tick = 0;
+
+    private static ExecutorService executor = null;
+    private static Job job = null;
+
+    /**
+     * @return whether the block at {@code pos} is part of a tree; when detecting trees in the background, false until
+     * detection is done
+     */
+    public static boolean isPartOfATree(ClientWorld world, BlockPos pos, boolean mustHaveLeaves) {
+        Tree tree = getTree(world, pos);
+        return tree != null && ChopUtil.isPartOfATree(tree.numTreeBlocks, tree.hasLeaves, mustHaveLeaves);
+    }
+
+    private static Tree getTree(ClientWorld world, BlockPos pos) {
+        long packedPos = pos.toLong();
+        Tree tree = trees.get(packedPos);
+        if (tree != null && !tree.isValid(world)) {
+            remove(tree);
+            tree = null;
+        }
+
+        if (tree == null) {
+            if (!ChopUtil.isBlockALog(world, pos)) {
+                tree = add(world, pos, Collections.emptySet(), false);
+            } else if (ConfigHandler.CLIENT.indicatorDetectsTreesInBackground.get()) {
+                if (job == null || job.world != world || !job.pos.equals(pos)) {
+                    cancelJob();
+                    job = new Job(world, pos.toImmutable());
+                    job.start();
+                }
+            } else {
+                tree = detect(world, pos);
+            }
+        }
+
+        return tree;
+    }
+
+    private static Tree detect(ClientWorld world, BlockPos pos) {
+        AtomicBoolean hasLeaves = new AtomicBoolean(false);
+        Set<BlockPos> treeBlocks = ChopUtil.getTreeBlocks(world, pos, hasLeaves);
+        return add(world, pos, treeBlocks, hasLeaves.get());
+    }
+
+    private static Tree add(ClientWorld world, BlockPos pos, Set<BlockPos> treeBlocks, boolean hasLeaves) {
+        if (trees.size() + treeBlocks.size() > MAX_NUM_CACHED_BLOCKS) {
+            trees.clear();
+        }
+
+        Tree tree = new Tree(world, pos, treeBlocks, hasLeaves);
+        for (long log : tree.logs) {
+            trees.put(log, tree);
+        }
+        return tree;
+    }
+
+    private static void remove(Tree tree) {
+        for (long log : tree.logs) {
+            trees.remove(log, tree);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onClientTick(TickEvent.ClientTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+
+        ++tick;
+
+        if (job != null && job.future.isDone()) {
+            Job finishedJob = job;
+            job = null;
+            finishJob(finishedJob);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onWorldUnload(WorldEvent.Unload event) {
+        if (event.getWorld().isRemote()) {
+            trees.clear();
+            cancelJob();
+        }
+    }
+
+    private static void finishJob(Job job) {
+        Detection detection;
+        try {
+            detection = job.future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            TreeChopMod.LOGGER.warn(String.format("Failed to detect tree at %s off the render thread", job.pos), e);
+            return;
+        }
+
+        if (job.snapshot.hasMissingSections()) {
+            if (++job.numRounds < MAX_NUM_DETECTION_ROUNDS) {
+                job.snapshot.copyMissingSections(job.world);
+                job.start();
+                ClientTreeCache.job = job;
+            } else {
+                detect(job.world, job.pos);
+            }
+            return;
+        }
+
+        // The world may have changed while detecting; if so, detection is repeated the next time the tree is looked at
+        if (detection.treeBlocks.stream().allMatch(pos -> ChopUtil.isBlockALog(job.world, pos))) {
+            AtomicBoolean hasLeaves = new AtomicBoolean(false);
+            Set<BlockPos> treeBlocks = ChopUtil.getTreeBlocks(job.world, job.pos, detection.treeBlocks, detection.hasLeaves, hasLeaves);
+            add(job.world, job.pos, treeBlocks, hasLeaves.get());
+        }
+    }
+
+    private static void cancelJob() {
+        if (job != null) {
+            job.future.cancel(true);
+            job = null;
+        }
+    }
+
+    private static ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "TreeChop Indicator Detection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return executor;
+    }
+
+    private static class Tree {
+        private final long[] logs;
+        private final BlockState[] states;
+        private final int numTreeBlocks;
+        private final boolean hasLeaves;
+        private final long creationTick;
+        private long validationTick;
+
+        public Tree(ClientWorld world, BlockPos pos, Set<BlockPos> treeBlocks, boolean hasLeaves) {
+            // Remember the looked-at block even if it is not part of a tree so that it is not detected again
+            int numLogs = treeBlocks.isEmpty() ? 1 : treeBlocks.size();
+            this.logs = new long[numLogs];
+            this.states = new BlockState[numLogs];
+            if (treeBlocks.isEmpty()) {
+                logs[0] = pos.toLong();
+                states[0] = world.getBlockState(pos);
+            } else {
+                int i = 0;
+                for (BlockPos log : treeBlocks) {
+                    logs[i] = log.toLong();
+                    states[i] = world.getBlockState(log);
+                    ++i;
+                }
+            }
+
+            this.numTreeBlocks = treeBlocks.size();
+            this.hasLeaves = hasLeaves;
+            this.creationTick = tick;
+            this.validationTick = tick;
+        }
+
+        public boolean isValid(ClientWorld world) {
+            if (tick - creationTick > MAX_TREE_AGE_TICKS) {
+                return false;
+            }
+
+            if (validationTick != tick) {
+                BlockPos.Mutable pos = new BlockPos.Mutable();
+                for (int i = 0; i < logs.length; ++i) {
+                    long log = logs[i];
+                    pos.setPos(BlockPos.unpackX(log), BlockPos.unpackY(log), BlockPos.unpackZ(log));
+                    if (world.getBlockState(pos) != states[i]) {
+                        return false;
+                    }
+                }
+                validationTick = tick;
+            }
+
+            return true;
+        }
+    }
+
+    private static class Job {
+        private final ClientWorld world;
+        private final BlockPos pos;
+        private final SnapshotBlockStateReader snapshot;
+        private Future<Detection> future;
+        private int numRounds = 0;
+
+        public Job(ClientWorld world, BlockPos pos) {
+            this.world = world;
+            this.pos = pos;
+
+            // Small sections, so that only the blocks around the tree are copied on the render thread
+            this.snapshot = new SnapshotBlockStateReader(world, SNAPSHOT_SECTION_BITS);
+            snapshot.copySection(world, pos);
+            snapshot.copySection(world, pos.up(1 << SNAPSHOT_SECTION_BITS));
+        }
+
+        public void start() {
+            future = getExecutor().submit(() -> {
+                AtomicBoolean hasLeaves = new AtomicBoolean(false);
+                Set<BlockPos> treeBlocks = ChopUtil.scanTreeBlocks(snapshot, pos, logPos -> ChopUtil.isBlockALog(snapshot, logPos), hasLeaves);
+                return new Detection(treeBlocks, hasLeaves.get());
+            });
+        }
+    }
+
+    private static class Detection {
+        private final Set<BlockPos> treeBlocks;
+        private final boolean hasLeaves;
+
+        public Detection(Set<BlockPos> treeBlocks, boolean hasLeaves) {
+            this.treeBlocks = treeBlocks;
+            this.hasLeaves = hasLeaves;
+        }
+    }
+
+}
@@ -2,6 +2,7 @@ package ht.treechop.client.gui.screen;
 
 import com.mojang.blaze3d.matrix.MatrixStack;
 import ht.treechop.client.Client;
+import ht.treechop.client.ClientTreeCache;
 import ht.treechop.client.gui.util.Sprite;
 import ht.treechop.common.config.ConfigHandler;
 import ht.treechop.common.settings.ChopSettings;
@@ -71,7 +72,7 @@ public class ChopIndicator extends AbstractGui {
             if ((pos.equals(lastBlockPos) || !Client.getChopSettings().equals(lastChopSettings))
             ) {
                 if (ChopUtil.playerWantsToFell(player, Client.getChopSettings())) {
-                    lastBlockWouldBeChopped = ChopUtil.isPartOfATree(
+                    lastBlockWouldBeChopped = ClientTreeCache.isPartOfATree(
                             world, pos, Client.getChopSettings().getTreesMustHaveLeaves()
                     );
                 } else {
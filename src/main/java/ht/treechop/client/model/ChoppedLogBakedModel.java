@@ -8,7 +8,6 @@ import ht.treechop.common.properties.BlockStateProperties;
 import ht.treechop.common.properties.ChoppedLogShape;
 import ht.treechop.common.util.FaceShape;
 import ht.treechop.common.util.Vector3;
-import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.BlockModelShapes;
@@ -19,26 +18,23 @@ import net.minecraft.client.renderer.model.ModelResourceLocation;
 import net.minecraft.client.renderer.texture.AtlasTexture;
 import net.minecraft.client.renderer.texture.TextureAtlasSprite;
 import net.minecraft.util.Direction;
-import net.minecraft.util.Direction.Axis;
 import net.minecraft.util.ResourceLocation;
-import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.IBlockDisplayReader;
 import net.minecraftforge.client.event.ModelBakeEvent;
 import net.minecraftforge.client.model.data.IDynamicBakedModel;
 import net.minecraftforge.client.model.data.IModelData;
-import net.minecraftforge.client.model.data.ModelDataMap;
 import net.minecraftforge.client.model.data.ModelProperty;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.EnumSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -48,19 +44,37 @@ public class ChoppedLogBakedModel implements IDynamicBakedModel {
     public static ModelProperty<Integer> CHOPS = new ModelProperty<>();
     public static ModelProperty<Set<Direction>> SOLID_SIDES = new ModelProperty<>();
     private final IBakedModel staticModel;
-    private final ResourceLocation textureRL = new ResourceLocation("treechop:block/chopped_log");
+    private static final ResourceLocation textureRL = new ResourceLocation("treechop:block/chopped_log");
     private final TextureAtlasSprite sprite;
     private final boolean removeBarkOnInteriorLogs;
 
+    // Quads depend only on shape, chops and which horizontal sides are solid, so they are baked once for each
+    // combination, indexed by ChoppedLogModelData.pack. Cleared when models are baked, in case the texture atlas changed.
+    private static final AtomicReferenceArray<List<BakedQuad>> bakedQuads
+            = new AtomicReferenceArray<>(ChoppedLogModelData.NUM_PACKED_VALUES);
+
     public ChoppedLogBakedModel(IBakedModel staticModel, boolean removeBarkOnInteriorLogs) {
+        this(
+                staticModel,
+                Minecraft.getInstance().getModelManager()
+                        .getAtlasTexture(AtlasTexture.LOCATION_BLOCKS_TEXTURE)
+                        .getSprite(textureRL),
+                removeBarkOnInteriorLogs
+        );
+    }
+
+    // Package-private for benchmarks, which run without a texture atlas
+    ChoppedLogBakedModel(IBakedModel staticModel, TextureAtlasSprite sprite, boolean removeBarkOnInteriorLogs) {
         this.staticModel = staticModel;
         this.removeBarkOnInteriorLogs = removeBarkOnInteriorLogs;
-        this.sprite = Minecraft.getInstance().getModelManager()
-                .getAtlasTexture(AtlasTexture.LOCATION_BLOCKS_TEXTURE)
-                .getSprite(textureRL);
+        this.sprite = sprite;
     }
 
     public static void overrideBlockStateModels(ModelBakeEvent event) {
+        for (int i = 0, n = bakedQuads.length(); i < n; ++i) {
+            bakedQuads.set(i, null);
+        }
+
         for (BlockState blockState : ModBlocks.CHOPPED_LOG.get().getStateContainer().getValidStates()) {
             ModelResourceLocation variantMRL = BlockModelShapes.getModelLocation(blockState);
             IBakedModel existingModel = event.getModelRegistry().get(variantMRL);
@@ -97,22 +111,22 @@ public class ChoppedLogBakedModel implements IDynamicBakedModel {
         }
 
         ChoppedLogShape shape = state.get(BlockStateProperties.CHOPPED_LOG_SHAPE);
-        Set<Direction> solidSides = removeBarkOnInteriorLogs
-                ? Arrays.stream(Direction.values())
-                .filter(direction -> direction.getAxis().isHorizontal() && !shape.isSideOpen(direction))
-                .filter(direction -> {
-                    BlockState blockState = world.getBlockState(pos.offset(direction));
-                    Block block = blockState.getBlock();
-                    return blockState.isSolid() && !(block instanceof ChoppedLogBlock);
-                })
-                .collect(Collectors.toCollection(() -> EnumSet.noneOf(Direction.class)))
-                : Collections.emptySet();
-
-        ModelDataMap.Builder builder = new ModelDataMap.Builder();
-        builder.withInitial(SHAPE, state.get(BlockStateProperties.CHOPPED_LOG_SHAPE));
-        builder.withInitial(CHOPS, state.get(BlockStateProperties.CHOP_COUNT));
-        builder.withInitial(SOLID_SIDES, solidSides);
-        return builder.build();
+        int solidSidesMask = 0;
+        if (removeBarkOnInteriorLogs) {
+            // world is the chunk render cache when meshing, so these reads are cheap
+            BlockPos.Mutable neighborPos = new BlockPos.Mutable();
+            for (int i = 0; i < 4; ++i) {
+                Direction direction = Direction.byHorizontalIndex(i);
+                if (!shape.isSideOpen(direction)) {
+                    BlockState blockState = world.getBlockState(neighborPos.setPos(pos).move(direction));
+                    if (blockState.isSolid() && !(blockState.getBlock() instanceof ChoppedLogBlock)) {
+                        solidSidesMask |= 1 << i;
+                    }
+                }
+            }
+        }
+
+        return ChoppedLogModelData.get(shape, state.get(BlockStateProperties.CHOP_COUNT), solidSidesMask);
     }
 
     @SuppressWarnings("ConstantConditions")
@@ -124,43 +138,24 @@ public class ChoppedLogBakedModel implements IDynamicBakedModel {
             @Nonnull Random rand,
             @Nonnull IModelData extraData
     ) {
-        if (extraData.hasProperty(SHAPE) && extraData.hasProperty(CHOPS)) {
+        if (extraData instanceof ChoppedLogModelData) {
+            return (side == null)
+                    ? getQuads(((ChoppedLogModelData) extraData).getPacked())
+                    : Collections.emptyList();
+        } else if (extraData.hasProperty(SHAPE) && extraData.hasProperty(CHOPS)) {
             if (side == null) {
                 ChoppedLogShape shape = extraData.getData(SHAPE);
                 int chops = extraData.getData(CHOPS);
                 Set<Direction> solidSides = extraData.getData(SOLID_SIDES);
 
-                AxisAlignedBB box = shape.getBoundingBox(chops);
-
-                float downY = (float) box.getMin(Axis.Y);
-                float upY = (float) box.getMax(Axis.Y);
-                float northZ = (float) box.getMin(Axis.Z);
-                float southZ = (float) box.getMax(Axis.Z);
-                float westX = (float) box.getMin(Axis.X);
-                float eastX = (float) box.getMax(Axis.X);
-
-                Vector3 topNorthEast = new Vector3(eastX, upY, northZ);
-                Vector3 topNorthWest = new Vector3(westX, upY, northZ);
-                Vector3 topSouthEast = new Vector3(eastX, upY, southZ);
-                Vector3 topSouthWest = new Vector3(westX, upY, southZ);
-                Vector3 bottomNorthEast = new Vector3(eastX, downY, northZ);
-                Vector3 bottomNorthWest = new Vector3(westX, downY, northZ);
-                Vector3 bottomSouthEast = new Vector3(eastX, downY, southZ);
-                Vector3 bottomSouthWest = new Vector3(westX, downY, southZ);
-
-                return Stream.concat(
-                        Stream.of(
-                            ModelUtil.makeQuad(textureRL, sprite, bottomSouthEast, bottomNorthWest, Direction.DOWN, null),
-                            ModelUtil.makeQuad(textureRL, sprite, topSouthEast, topNorthWest, Direction.UP, null),
-                            ModelUtil.makeQuad(textureRL, sprite, topNorthEast, bottomNorthWest, Direction.NORTH, null),
-                            ModelUtil.makeQuad(textureRL, sprite, topSouthEast, bottomSouthWest, Direction.SOUTH, null),
-                            ModelUtil.makeQuad(textureRL, sprite, topSouthWest, bottomNorthWest, Direction.WEST, null),
-                            ModelUtil.makeQuad(textureRL, sprite, topSouthEast, bottomNorthEast, Direction.EAST, null)
-                        ),
-                        solidSides.stream().map(
-                                direction -> ModelUtil.makeQuad(textureRL, sprite, FaceShape.get(direction), direction.getOpposite(), null)
-                        )
-                ).filter(Objects::nonNull).collect(Collectors.toList());
+                int solidSidesMask = 0;
+                for (Direction direction : solidSides) {
+                    if (direction.getAxis().isHorizontal()) {
+                        solidSidesMask |= 1 << direction.getHorizontalIndex();
+                    }
+                }
+
+                return getQuads(ChoppedLogModelData.pack(shape, chops, solidSidesMask));
             }
             else {
                 return Collections.emptyList();
@@ -171,6 +166,49 @@ public class ChoppedLogBakedModel implements IDynamicBakedModel {
         }
     }
 
+    private List<BakedQuad> getQuads(int packedModelData) {
+        List<BakedQuad> quads = bakedQuads.get(packedModelData);
+        if (quads == null) {
+            ChoppedLogModelData modelData = ChoppedLogModelData.get(packedModelData);
+            quads = bakeQuads(modelData.getShape(), modelData.getChops(), modelData.getSolidSidesMask());
+            bakedQuads.set(packedModelData, quads); // Racing threads bake equal quads, so either can win
+        }
+        return quads;
+    }
+
+    private List<BakedQuad> bakeQuads(ChoppedLogShape shape, int chops, int solidSidesMask) {
+        float downY = shape.getExtent(chops, Direction.DOWN);
+        float upY = shape.getExtent(chops, Direction.UP);
+        float northZ = shape.getExtent(chops, Direction.NORTH);
+        float southZ = shape.getExtent(chops, Direction.SOUTH);
+        float westX = shape.getExtent(chops, Direction.WEST);
+        float eastX = shape.getExtent(chops, Direction.EAST);
+
+        Vector3 topNorthEast = new Vector3(eastX, upY, northZ);
+        Vector3 topNorthWest = new Vector3(westX, upY, northZ);
+        Vector3 topSouthEast = new Vector3(eastX, upY, southZ);
+        Vector3 topSouthWest = new Vector3(westX, upY, southZ);
+        Vector3 bottomNorthEast = new Vector3(eastX, downY, northZ);
+        Vector3 bottomNorthWest = new Vector3(westX, downY, northZ);
+        Vector3 bottomSouthEast = new Vector3(eastX, downY, southZ);
+        Vector3 bottomSouthWest = new Vector3(westX, downY, southZ);
+
+        return Collections.unmodifiableList(Stream.concat(
+                Stream.of(
+                    ModelUtil.makeQuad(textureRL, sprite, bottomSouthEast, bottomNorthWest, Direction.DOWN, null),
+                    ModelUtil.makeQuad(textureRL, sprite, topSouthEast, topNorthWest, Direction.UP, null),
+                    ModelUtil.makeQuad(textureRL, sprite, topNorthEast, bottomNorthWest, Direction.NORTH, null),
+                    ModelUtil.makeQuad(textureRL, sprite, topSouthEast, bottomSouthWest, Direction.SOUTH, null),
+                    ModelUtil.makeQuad(textureRL, sprite, topSouthWest, bottomNorthWest, Direction.WEST, null),
+                    ModelUtil.makeQuad(textureRL, sprite, topSouthEast, bottomNorthEast, Direction.EAST, null)
+                ),
+                Arrays.stream(Direction.values())
+                        .filter(direction -> direction.getAxis().isHorizontal()
+                                && (solidSidesMask & (1 << direction.getHorizontalIndex())) != 0)
+                        .map(direction -> ModelUtil.makeQuad(textureRL, sprite, FaceShape.get(direction), direction.getOpposite(), null))
+        ).filter(Objects::nonNull).collect(Collectors.toList()));
+    }
+
     @Override
     public boolean isAmbientOcclusion() {
         return staticModel.isAmbientOcclusion();
@@ -0,0 +1,116 @@
+package ht.treechop.client.model;
+
+import ht.treechop.common.properties.ChoppedLogShape;
+import net.minecraft.util.Direction;
+import net.minecraftforge.client.model.data.IModelData;
+import net.minecraftforge.client.model.data.ModelProperty;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Immutable model data for {@link ChoppedLogBakedModel}, packing the shape, chops and solid horizontal sides into one
+ * int. There is a single instance for each packed value, so getting model data for a chopped log does not allocate.
+ */
+public class ChoppedLogModelData implements IModelData {
+
+    static final int MAX_NUM_CHOPS = 7;
+    static final int NUM_SOLID_SIDES_MASKS = 1 << 4;
+    static final int NUM_PACKED_VALUES = ChoppedLogShape.values().length * (MAX_NUM_CHOPS + 1) * NUM_SOLID_SIDES_MASKS;
+
+    private static final ChoppedLogShape[] SHAPES = ChoppedLogShape.values();
+    private static final Set<Direction>[] SOLID_SIDES = makeSolidSidesSets();
+    private static final ChoppedLogModelData[] INSTANCES = makeInstances();
+
+    private final int packed;
+
+    private ChoppedLogModelData(int packed) {
+        this.packed = packed;
+    }
+
+    /**
+     * @param solidSidesMask has bit {@link Direction#getHorizontalIndex()} set for each solid horizontal side
+     */
+    public static ChoppedLogModelData get(ChoppedLogShape shape, int chops, int solidSidesMask) {
+        return INSTANCES[pack(shape, chops, solidSidesMask)];
+    }
+
+    static ChoppedLogModelData get(int packed) {
+        return INSTANCES[packed];
+    }
+
+    static int pack(ChoppedLogShape shape, int chops, int solidSidesMask) {
+        return (shape.ordinal() * (MAX_NUM_CHOPS + 1) + chops) * NUM_SOLID_SIDES_MASKS + solidSidesMask;
+    }
+
+    public int getPacked() {
+        return packed;
+    }
+
+    public ChoppedLogShape getShape() {
+        return SHAPES[packed / ((MAX_NUM_CHOPS + 1) * NUM_SOLID_SIDES_MASKS)];
+    }
+
+    public int getChops() {
+        return (packed / NUM_SOLID_SIDES_MASKS) % (MAX_NUM_CHOPS + 1);
+    }
+
+    public int getSolidSidesMask() {
+        return packed % NUM_SOLID_SIDES_MASKS;
+    }
+
+    @Override
+    public boolean hasProperty(ModelProperty<?> prop) {
+        return prop == ChoppedLogBakedModel.SHAPE || prop == ChoppedLogBakedModel.CHOPS || prop == ChoppedLogBakedModel.SOLID_SIDES;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    @Override
+    public <T> T getData(ModelProperty<T> prop) {
+        if (prop == ChoppedLogBakedModel.SHAPE) {
+            return (T) getShape();
+        } else if (prop == ChoppedLogBakedModel.CHOPS) {
+            return (T) Integer.valueOf(getChops());
+        } else if (prop == ChoppedLogBakedModel.SOLID_SIDES) {
+            return (T) SOLID_SIDES[getSolidSidesMask()];
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Instances are shared, so this does nothing.
+     */
+    @Nullable
+    @Override
+    public <T> T setData(ModelProperty<T> prop, T data) {
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<Direction>[] makeSolidSidesSets() {
+        Set<Direction>[] sets = new Set[NUM_SOLID_SIDES_MASKS];
+        for (int mask = 0; mask < NUM_SOLID_SIDES_MASKS; ++mask) {
+            Set<Direction> set = EnumSet.noneOf(Direction.class);
+            for (int i = 0; i < 4; ++i) {
+                if ((mask & (1 << i)) != 0) {
+                    set.add(Direction.byHorizontalIndex(i));
+                }
+            }
+            sets[mask] = Collections.unmodifiableSet(set);
+        }
+        return sets;
+    }
+
+    private static ChoppedLogModelData[] makeInstances() {
+        ChoppedLogModelData[] instances = new ChoppedLogModelData[NUM_PACKED_VALUES];
+        for (int i = 0; i < NUM_PACKED_VALUES; ++i) {
+            instances[i] = new ChoppedLogModelData(i);
+        }
+        return instances;
+    }
+
+}
@@ -3,23 +3,33 @@ package ht.treechop.common;
 import ht.treechop.TreeChopMod;
 import ht.treechop.common.capabilities.ChopSettingsCapability;
 import ht.treechop.common.capabilities.ChopSettingsProvider;
+import ht.treechop.common.capabilities.ChunkChopIndex;
+import ht.treechop.common.capabilities.ChunkChopIndexProvider;
 import ht.treechop.common.config.ConfigHandler;
 import ht.treechop.common.event.ChopEvent;
 import ht.treechop.common.network.PacketHandler;
 import ht.treechop.common.util.ChopResult;
+import ht.treechop.common.util.ChopStats;
 import ht.treechop.common.util.ChopUtil;
+import ht.treechop.common.util.DropCollector;
 import ht.treechop.common.util.FauxPlayerInteractionManager;
+import ht.treechop.server.AsyncFelling;
+import ht.treechop.server.ChopAdmission;
+import ht.treechop.server.PendingChop;
 import net.minecraft.block.BlockState;
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.item.ItemEntity;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.item.ItemStack;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.server.ServerWorld;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.AttachCapabilitiesEvent;
 import net.minecraftforge.event.TagsUpdatedEvent;
+import net.minecraftforge.event.entity.EntityJoinWorldEvent;
 import net.minecraftforge.event.world.BlockEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.event.lifecycle.FMLCommonSetupEvent;
@@ -33,6 +43,7 @@ public class Common {
     @SubscribeEvent
     public static void onCommonSetup(FMLCommonSetupEvent event) {
         ChopSettingsCapability.register();
+        ChunkChopIndex.register();
         PacketHandler.init();
     }
 
@@ -47,6 +58,12 @@ public class Common {
         BlockState blockState = event.getState();
         BlockPos pos = event.getPos();
 
+        if (event.getWorld() instanceof ServerWorld
+                && (AsyncFelling.isPending((ServerWorld) event.getWorld(), pos) || ChopAdmission.isQueued((ServerWorld) event.getWorld(), pos))) {
+            event.setCanceled(true);
+            return;
+        }
+
         if (!isBlockALog(blockState)
                 || !ConfigHandler.COMMON.enabled.get()
                 || !ChopUtil.canChopWithTool(tool)
@@ -69,6 +86,12 @@ public class Common {
             return;
         }
 
+        long startTime = System.nanoTime();
+        chop(event, world, agent, pos, blockState, tool);
+        ChopStats.breakEventNanos.record(System.nanoTime() - startTime);
+    }
+
+    private static void chop(BlockEvent.BreakEvent event, ServerWorld world, ServerPlayerEntity agent, BlockPos pos, BlockState blockState, ItemStack tool) {
         ChopEvent.StartChopEvent startChopEvent = new ChopEvent.StartChopEvent(
                 event,
                 world,
@@ -84,25 +107,57 @@ public class Common {
             return;
         }
 
-        ChopResult chopResult = ChopUtil.getChopResult(
-                world,
-                pos,
-                agent,
-                startChopEvent.getNumChops(),
-                startChopEvent.getFelling(),
-                logPos -> isBlockALog(world, logPos)
-        );
+        PendingChop chop = new PendingChop(world, agent, pos, blockState, tool, startChopEvent.getNumChops(), startChopEvent.getFelling(), event.getExpToDrop());
+        if (!ChopAdmission.tryAdmit(chop)) {
+            event.setCanceled(true);
+            return;
+        }
 
-        if (chopResult != ChopResult.IGNORED) {
-            if (chopResult.apply(pos, agent, tool, ConfigHandler.COMMON.breakLeaves.get())) {
+        ChopResult chopResult;
+        if (chop.isFelling() && AsyncFelling.isEnabled()) {
+            chopResult = AsyncFelling.chopNowOrSubmit(chop);
+            if (chopResult == null) {
                 event.setCanceled(true);
-
-                if (!agent.isCreative()) {
-                    ChopUtil.doItemDamage(tool, world, blockState, pos, agent);
-                }
+                return;
             }
+        } else {
+            chopResult = ChopUtil.getChopResult(
+                    world,
+                    pos,
+                    agent,
+                    startChopEvent.getNumChops(),
+                    startChopEvent.getFelling()
+            );
+        }
 
-            MinecraftForge.EVENT_BUS.post(new ChopEvent.FinishChopEvent(world, agent, pos, blockState));
+        if (applyChopResult(world, agent, pos, blockState, tool, chopResult)) {
+            event.setCanceled(true);
+        }
+    }
+
+    /**
+     * @return whether {@code chopResult} was applied; if not, the chopped block should be broken normally
+     */
+    public static boolean applyChopResult(ServerWorld world, ServerPlayerEntity agent, BlockPos pos, BlockState blockState, ItemStack tool, ChopResult chopResult) {
+        if (chopResult == ChopResult.IGNORED) {
+            return false;
+        }
+
+        boolean applied = chopResult.apply(pos, agent, tool, ConfigHandler.COMMON.breakLeaves.get());
+        ChopAdmission.charge(chopResult.getNumBlocksChanged(), chopResult.isFelling());
+        if (applied && !agent.isCreative()) {
+            ChopUtil.doItemDamage(tool, world, blockState, pos, agent);
+        }
+
+        MinecraftForge.EVENT_BUS.post(new ChopEvent.FinishChopEvent(world, agent, pos, blockState));
+
+        return applied;
+    }
+
+    @SubscribeEvent
+    public static void onEntityJoinWorld(EntityJoinWorldEvent event) {
+        if (event.getEntity() instanceof ItemEntity && DropCollector.collect((ItemEntity) event.getEntity())) {
+            event.setCanceled(true);
         }
     }
 
@@ -116,4 +171,13 @@ public class Common {
         }
     }
 
+    @SubscribeEvent
+    public static void onAttachChunkCapabilities(AttachCapabilitiesEvent<Chunk> event) {
+        final ResourceLocation loc = new ResourceLocation(TreeChopMod.MOD_ID, "chop_index");
+
+        if (!event.getObject().getWorld().isRemote()) {
+            event.addCapability(loc, new ChunkChopIndexProvider());
+        }
+    }
+
 }
@@ -1,21 +1,26 @@
 package ht.treechop.common.block;
 
 import ht.treechop.api.IChoppableBlock;
+import ht.treechop.common.capabilities.ChunkChopIndex;
 import ht.treechop.common.properties.BlockStateProperties;
 import ht.treechop.common.properties.ChoppedLogShape;
+import ht.treechop.common.util.CachedBlockStateReader;
+import ht.treechop.common.util.IBlockStateReader;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.state.EnumProperty;
 import net.minecraft.state.IntegerProperty;
 import net.minecraft.state.StateContainer;
 import net.minecraft.util.Direction;
-import net.minecraft.util.Direction.Axis;
-import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.shapes.ISelectionContext;
 import net.minecraft.util.math.shapes.VoxelShape;
 import net.minecraft.world.IBlockReader;
 import net.minecraft.world.IWorld;
+import net.minecraft.world.World;
+
+import java.util.function.Function;
 
 import static ht.treechop.common.util.ChopUtil.isBlockALog;
 import static ht.treechop.common.util.ChopUtil.isBlockLeaves;
@@ -25,6 +30,9 @@ public class ChoppedLogBlock extends Block implements IChoppableBlock {
     protected static final IntegerProperty CHOPS = BlockStateProperties.CHOP_COUNT;
     protected static final EnumProperty<ChoppedLogShape> SHAPE = BlockStateProperties.CHOPPED_LOG_SHAPE;
 
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final byte SIDES_KNOWN = 1 << 6;
+
     public ChoppedLogBlock(Properties properties) {
         super(properties.variableOpacity());
         this.setDefaultState(
@@ -35,43 +43,76 @@ public class ChoppedLogBlock extends Block implements IChoppableBlock {
     }
 
     public static ChoppedLogShape getPlacementShape(IWorld world, BlockPos blockPos) {
-        final byte DOWN     = 1;
-        final byte UP       = 1 << 1;
-        final byte NORTH    = 1 << 2;
-        final byte SOUTH    = 1 << 3;
-        final byte WEST     = 1 << 4;
-        final byte EAST     = 1 << 5;
-
-        byte openSides = (byte) (
-                (isBlockOpen(world, blockPos.down()) ? DOWN : 0)
-                | (!isBlockALog(world, blockPos.up()) ? UP : 0)
-                | (!isBlockALog(world, blockPos.north()) ? NORTH : 0)
-                | (!isBlockALog(world, blockPos.south()) ? SOUTH : 0)
-                | (!isBlockALog(world, blockPos.west()) ? WEST : 0)
-                | (!isBlockALog(world, blockPos.east()) ? EAST : 0)
-        );
+        return getPlacementShape(new CachedBlockStateReader(world), blockPos);
+    }
+
+    public static ChoppedLogShape getPlacementShape(IBlockStateReader reader, BlockPos blockPos) {
+        long pos = blockPos.toLong();
+        byte openSides = 0;
+        for (Direction direction : DIRECTIONS) {
+            BlockState blockState = reader.getBlockState(BlockPos.offset(pos, direction));
+            if (isSideOpen(blockState, direction)) {
+                openSides |= 1 << direction.ordinal();
+            }
+        }
 
         return ChoppedLogShape.forOpenSides(openSides);
     }
 
-    private static boolean isBlockOpen(IWorld world, BlockPos pos) {
-        return (world.isAirBlock(pos.down()) || isBlockLeaves(world, pos.down()));
+    /**
+     * @return a function that finds the shapes of chopped logs placed at the positions given to it. Each neighbor is
+     * only classified once across calls, which saves work when several blocks next to each other are chopped together.
+     */
+    public static Function<BlockPos, ChoppedLogShape> getPlacementShapes(IBlockStateReader reader) {
+        Long2ByteOpenHashMap neighborSides = new Long2ByteOpenHashMap();
+        return blockPos -> {
+            long pos = blockPos.toLong();
+            byte openSides = 0;
+            for (Direction direction : DIRECTIONS) {
+                long neighbor = BlockPos.offset(pos, direction);
+                byte sides = neighborSides.get(neighbor);
+                if (sides == 0) {
+                    sides = getSidesOpenedBy(reader.getBlockState(neighbor));
+                    neighborSides.put(neighbor, sides);
+                }
+
+                if ((sides & (1 << direction.ordinal())) != 0) {
+                    openSides |= 1 << direction.ordinal();
+                }
+            }
+            return ChoppedLogShape.forOpenSides(openSides);
+        };
+    }
+
+    /**
+     * @return a mask of the directions in which a chopped log would be open if {@code blockState} were next to it in
+     * that direction, with {@link #SIDES_KNOWN} set so that it is never zero
+     */
+    private static byte getSidesOpenedBy(BlockState blockState) {
+        byte sides = SIDES_KNOWN;
+        for (Direction direction : DIRECTIONS) {
+            if (isSideOpen(blockState, direction)) {
+                sides |= 1 << direction.ordinal();
+            }
+        }
+        return sides;
+    }
+
+    /**
+     * @param blockState the block next to the chopped log in {@code direction}
+     */
+    private static boolean isSideOpen(BlockState blockState, Direction direction) {
+        if (direction == Direction.DOWN) {
+            return blockState.isAir() || isBlockLeaves(blockState);
+        } else {
+            return !isBlockALog(blockState);
+        }
     }
 
     @SuppressWarnings({"deprecation", "NullableProblems"})
     @Override
     public VoxelShape getShape(BlockState state, IBlockReader worldIn, BlockPos pos, ISelectionContext context) {
-        int chops = state.get(CHOPS);
-        AxisAlignedBB box = state.get(SHAPE).getBoundingBox(chops);
-        VoxelShape voxelShape = Block.makeCuboidShape(
-                box.getMin(Axis.X),
-                box.getMin(Axis.Y),
-                box.getMin(Axis.Z),
-                box.getMax(Axis.X),
-                box.getMax(Axis.Y),
-                box.getMax(Axis.Z)
-        );
-        return voxelShape;
+        return state.get(SHAPE).getVoxelShape(state.get(CHOPS));
     }
 
     @SuppressWarnings({"deprecation", "NullableProblems"})
@@ -80,6 +121,24 @@ public class ChoppedLogBlock extends Block implements IChoppableBlock {
         return state.get(SHAPE).getOcclusionShape();
     }
 
+    @SuppressWarnings({"deprecation", "NullableProblems"})
+    @Override
+    public void onBlockAdded(BlockState state, World world, BlockPos pos, BlockState oldState, boolean isMoving) {
+        super.onBlockAdded(state, world, pos, oldState, isMoving);
+        if (!world.isRemote()) {
+            ChunkChopIndex.update(world, pos, state);
+        }
+    }
+
+    @SuppressWarnings({"deprecation", "NullableProblems"})
+    @Override
+    public void onReplaced(BlockState state, World world, BlockPos pos, BlockState newState, boolean isMoving) {
+        if (!world.isRemote()) {
+            ChunkChopIndex.update(world, pos, newState);
+        }
+        super.onReplaced(state, world, pos, newState, isMoving);
+    }
+
     @Override
     public boolean isSideInvisible(BlockState state, BlockState adjacentBlockState, Direction side) {
         return true;
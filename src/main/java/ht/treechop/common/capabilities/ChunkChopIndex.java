@@ -0,0 +1,205 @@
+package ht.treechop.common.capabilities;
+
+import ht.treechop.TreeChopMod;
+import ht.treechop.common.block.ChoppedLogBlock;
+import ht.treechop.common.util.ChopUtil;
+import it.unimi.dsi.fastutil.longs.Long2ByteMap;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.INBT;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MutableBoundingBox;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.CapabilityInject;
+import net.minecraftforge.common.capabilities.CapabilityManager;
+
+import javax.annotation.Nullable;
+
+/**
+ * Remembers where a chunk's chopped log blocks are and how many chops each has, so that nearby chops can be found
+ * without scanning the world. Blocks are added and removed by {@link ChoppedLogBlock} as they change. Chunks saved
+ * before the index existed are caught up one section at a time, the first time a section is queried.
+ */
+public class ChunkChopIndex {
+    @CapabilityInject(ChunkChopIndex.class)
+    public static final Capability<ChunkChopIndex> CAPABILITY = null;
+
+    private static final int NUM_SECTIONS = 16;
+
+    private final Long2ByteOpenHashMap chops = new Long2ByteOpenHashMap();
+    private int indexedSections = 0;
+
+    public static void register() {
+        CapabilityManager.INSTANCE.register(
+                ChunkChopIndex.class,
+                new ChunkChopIndex.Storage(),
+                ChunkChopIndex::new
+        );
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    @Nullable
+    public static ChunkChopIndex forChunk(Chunk chunk) {
+        return chunk.getCapability(CAPABILITY).orElse(null);
+    }
+
+    /**
+     * Records that the block at {@code pos} is now {@code blockState}. Must be called on the server.
+     */
+    public static void update(World world, BlockPos pos, BlockState blockState) {
+        ChunkChopIndex index = forChunk(world.getChunkAt(pos));
+        if (index != null) {
+            if (blockState.getBlock() instanceof ChoppedLogBlock) {
+                index.chops.put(pos.toLong(), (byte) ChopUtil.getNumChops(blockState));
+            } else {
+                index.chops.remove(pos.toLong());
+            }
+        }
+    }
+
+    /**
+     * @return the positions and numbers of chops of the chopped log blocks inside {@code box}, in chunks that are loaded
+     */
+    public static Long2ByteMap getChoppedBlocks(World world, MutableBoundingBox box) {
+        Long2ByteOpenHashMap choppedBlocks = new Long2ByteOpenHashMap();
+        int minSection = Math.max(0, box.minY >> 4);
+        int maxSection = Math.min(NUM_SECTIONS - 1, box.maxY >> 4);
+
+        for (int chunkX = box.minX >> 4; chunkX <= box.maxX >> 4; ++chunkX) {
+            for (int chunkZ = box.minZ >> 4; chunkZ <= box.maxZ >> 4; ++chunkZ) {
+                Chunk chunk = world.getChunkProvider().getChunkNow(chunkX, chunkZ);
+                ChunkChopIndex index = (chunk != null) ? forChunk(chunk) : null;
+                if (index == null) {
+                    continue;
+                }
+
+                for (int sectionY = minSection; sectionY <= maxSection; ++sectionY) {
+                    index.indexSection(chunk, sectionY);
+                }
+
+                index.chops.long2ByteEntrySet().fastForEach(entry -> {
+                    long pos = entry.getLongKey();
+                    if (isInside(box, pos)) {
+                        choppedBlocks.put(pos, entry.getByteValue());
+                    }
+                });
+            }
+        }
+
+        return choppedBlocks;
+    }
+
+    /**
+     * @return the number of chops of the chopped log block at {@code pos}, or 0 if there is none or its chunk is not
+     * loaded
+     */
+    public static int getNumChops(World world, long pos) {
+        int sectionY = BlockPos.unpackY(pos) >> 4;
+        if (sectionY < 0 || sectionY >= NUM_SECTIONS) {
+            return 0;
+        }
+
+        Chunk chunk = world.getChunkProvider().getChunkNow(BlockPos.unpackX(pos) >> 4, BlockPos.unpackZ(pos) >> 4);
+        ChunkChopIndex index = (chunk != null) ? forChunk(chunk) : null;
+        if (index == null) {
+            return 0;
+        }
+
+        index.indexSection(chunk, sectionY);
+        return index.chops.get(pos);
+    }
+
+    public Long2ByteMap getChops() {
+        return chops;
+    }
+
+    /**
+     * Finds the chopped log blocks in a section that was saved before the index existed.
+     */
+    public void indexSection(Chunk chunk, int sectionY) {
+        int sectionBit = 1 << sectionY;
+        if ((indexedSections & sectionBit) != 0) {
+            return;
+        }
+
+        ChunkSection section = chunk.getSections()[sectionY];
+        // The palette can only have states that were in the section at some point, so most sections are skipped here
+        if (!ChunkSection.isEmpty(section) && section.isValidPOIState(blockState -> blockState.getBlock() instanceof ChoppedLogBlock)) {
+            int x0 = chunk.getPos().getXStart();
+            int y0 = sectionY << 4;
+            int z0 = chunk.getPos().getZStart();
+            for (int y = 0; y < 16; ++y) {
+                for (int z = 0; z < 16; ++z) {
+                    for (int x = 0; x < 16; ++x) {
+                        BlockState blockState = section.getBlockState(x, y, z);
+                        if (blockState.getBlock() instanceof ChoppedLogBlock) {
+                            chops.put(BlockPos.pack(x0 + x, y0 + y, z0 + z), (byte) ChopUtil.getNumChops(blockState));
+                        }
+                    }
+                }
+            }
+        }
+
+        indexedSections |= sectionBit;
+    }
+
+    private static boolean isInside(MutableBoundingBox box, long pos) {
+        int x = BlockPos.unpackX(pos);
+        int y = BlockPos.unpackY(pos);
+        int z = BlockPos.unpackZ(pos);
+        return x >= box.minX && x <= box.maxX
+                && y >= box.minY && y <= box.maxY
+                && z >= box.minZ && z <= box.maxZ;
+    }
+
+    public static class Storage implements Capability.IStorage<ChunkChopIndex> {
+
+        private static final String POSITIONS_KEY = "positions";
+        private static final String CHOPS_KEY = "chops";
+        private static final String INDEXED_SECTIONS_KEY = "indexedSections";
+
+        @Nullable
+        @Override
+        public INBT writeNBT(Capability<ChunkChopIndex> capability, ChunkChopIndex instance, Direction side) {
+            long[] positions = new long[instance.chops.size()];
+            byte[] chops = new byte[instance.chops.size()];
+            int i = 0;
+            for (Long2ByteMap.Entry entry : instance.chops.long2ByteEntrySet()) {
+                positions[i] = entry.getLongKey();
+                chops[i] = entry.getByteValue();
+                ++i;
+            }
+
+            CompoundNBT nbt = new CompoundNBT();
+            nbt.putLongArray(POSITIONS_KEY, positions);
+            nbt.putByteArray(CHOPS_KEY, chops);
+            nbt.putInt(INDEXED_SECTIONS_KEY, instance.indexedSections);
+            return nbt;
+        }
+
+        @Override
+        public void readNBT(Capability<ChunkChopIndex> capability, ChunkChopIndex instance, Direction side, INBT nbt) {
+            if (nbt instanceof CompoundNBT) {
+                CompoundNBT compoundNbt = (CompoundNBT) nbt;
+                long[] positions = compoundNbt.getLongArray(POSITIONS_KEY);
+                byte[] chops = compoundNbt.getByteArray(CHOPS_KEY);
+                if (positions.length == chops.length) {
+                    instance.chops.clear();
+                    for (int i = 0; i < positions.length; ++i) {
+                        instance.chops.put(positions[i], chops[i]);
+                    }
+                    instance.indexedSections = compoundNbt.getInt(INDEXED_SECTIONS_KEY);
+                } else {
+                    TreeChopMod.LOGGER.warn("Chunk chop index NBT has mismatched positions and chops; the chunk will be indexed again");
+                }
+            } else {
+                TreeChopMod.LOGGER.warn("Failed to read ChunkChopIndex NBT");
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package ht.treechop.common.capabilities;
+
+import net.minecraft.nbt.INBT;
+import net.minecraft.util.Direction;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.ICapabilitySerializable;
+import net.minecraftforge.common.util.LazyOptional;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+public class ChunkChopIndexProvider implements ICapabilitySerializable<INBT> {
+
+    @SuppressWarnings({"NullableProblems", "ConstantConditions"})
+    private final LazyOptional<ChunkChopIndex> index = LazyOptional.of(ChunkChopIndex.CAPABILITY::getDefaultInstance);
+
+    @SuppressWarnings({"NullableProblems", "ConstantConditions"})
+    @Override
+    public <T> LazyOptional<T> getCapability(@Nonnull Capability<T> capability, @Nullable Direction side) {
+        return (ChunkChopIndex.CAPABILITY == capability) ? index.cast() : LazyOptional.empty();
+    }
+
+    private ChunkChopIndex getIndex() {
+        return index.orElseThrow(() -> new IllegalArgumentException("LazyOptional must not be empty"));
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    @Override
+    public INBT serializeNBT() {
+        return ChunkChopIndex.CAPABILITY.writeNBT(getIndex(), null);
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    @Override
+    public void deserializeNBT(INBT nbt) {
+        ChunkChopIndex.CAPABILITY.readNBT(getIndex(), null, nbt);
+    }
+
+}
@@ -7,6 +7,7 @@ import ht.treechop.common.settings.Permissions;
 import ht.treechop.common.settings.Setting;
 import ht.treechop.common.settings.SettingsField;
 import ht.treechop.common.settings.SneakBehavior;
+import ht.treechop.common.util.BlockClassifier;
 import ht.treechop.server.Server;
 import net.minecraft.block.Block;
 import net.minecraft.item.Item;
@@ -41,10 +42,12 @@ public class ConfigHandler {
     public static Map<Item, OverrideInfo> itemOverrides = null;
     public static int maxBreakLeavesDistance = 7;
     public static boolean ignorePersistentLeaves = true;
+    public static boolean followLeavesDistances = false;
 
     public static void onReload() {
         maxBreakLeavesDistance = COMMON.maxBreakLeavesDistance.get();
         ignorePersistentLeaves = COMMON.ignorePersistentLeaves.get();
+        followLeavesDistances = COMMON.followLeavesDistances.get();
         fakePlayerChopSettings.setChoppingEnabled(COMMON.fakePlayerChoppingEnabled.get());
         fakePlayerChopSettings.setFellingEnabled(COMMON.fakePlayerFellingEnabled.get());
         fakePlayerChopSettings.setTreesMustHaveLeaves(COMMON.fakePlayerTreesMustHaveLeaves.get());
@@ -53,6 +56,7 @@ public class ConfigHandler {
         itemOverrides = null;
 
         updatePermissions();
+        updateBlockClassifications();
     }
 
     public static void updateTags(ITagCollectionSupplier tagManager) {
@@ -60,6 +64,12 @@ public class ConfigHandler {
         blockTagForDetectingLeaves = tagManager.getBlockTags().get(new ResourceLocation(COMMON.blockTagForDetectingLeaves.get()));
         itemsBlacklist = null;
         itemOverrides = null;
+
+        updateBlockClassifications();
+    }
+
+    private static void updateBlockClassifications() {
+        BlockClassifier.update(blockTagForDetectingLogs, blockTagForDetectingLeaves, ignorePersistentLeaves);
     }
 
     private static void updatePermissions() {
@@ -182,6 +192,7 @@ public class ConfigHandler {
         public final ForgeConfigSpec.IntValue maxNumLeavesBlocks;
         public final ForgeConfigSpec.BooleanValue breakLeaves;
         public final ForgeConfigSpec.BooleanValue ignorePersistentLeaves;
+        public final ForgeConfigSpec.BooleanValue followLeavesDistances;
         protected final ForgeConfigSpec.IntValue maxBreakLeavesDistance;
         protected final ForgeConfigSpec.ConfigValue<String> blockTagForDetectingLogs;
         protected final ForgeConfigSpec.ConfigValue<String> blockTagForDetectingLeaves;
@@ -189,6 +200,15 @@ public class ConfigHandler {
         public final ForgeConfigSpec.EnumValue<ChopCountingAlgorithm> chopCountingAlgorithm;
         public final ForgeConfigSpec.EnumValue<Rounder> chopCountRounding;
         public final ForgeConfigSpec.BooleanValue canRequireMoreChopsThanBlocks;
+        public final ForgeConfigSpec.BooleanValue asyncTreeDetection;
+        public final ForgeConfigSpec.IntValue asyncTreeDetectionThreads;
+        public final ForgeConfigSpec.IntValue maxFellingBlocksPerTick;
+        public final ForgeConfigSpec.IntValue maxFellingMicrosecondsPerTick;
+        public final ForgeConfigSpec.IntValue maxTreeBlocksPerTick;
+        public final ForgeConfigSpec.IntValue maxQueuedChops;
+        public final ForgeConfigSpec.DoubleValue maxChopsPerSecondPerPlayer;
+        public final ForgeConfigSpec.IntValue maxChopBurstPerPlayer;
+        public final ForgeConfigSpec.IntValue statsCsvIntervalSeconds;
         public final ForgeConfigSpec.DoubleValue logarithmicA;
         public final ForgeConfigSpec.DoubleValue linearM;
         public final ForgeConfigSpec.DoubleValue linearB;
@@ -239,6 +259,12 @@ public class ConfigHandler {
             maxBreakLeavesDistance = builder
                     .comment("Maximum distance from log blocks to destroy non-standard leaves blocks (e.g. mushroom caps) when felling")
                     .defineInRange("maxBreakLeavesDistance", 7, 0, 16);
+            followLeavesDistances = builder
+                    .comment(String.join("\n",
+                            "Whether to only look for leaves to destroy along paths where their distance from logs keeps increasing",
+                            "- Leaves held up by nearby trees are skipped without searching through them, which is much faster in dense forests",
+                            "- Only applies to leaves that track their distance from logs, like vanilla leaves"))
+                    .define("followLeavesDistances", false);
             blockTagForDetectingLogs = builder
                     .comment("The tag that blocks must have to be considered choppable (default: treechop:choppables)")
                     .define("blockTagForDetectingLogs", "treechop:choppables");
@@ -274,6 +300,49 @@ public class ConfigHandler {
             builder.pop();
             builder.pop();
 
+            builder.push("performance");
+            asyncTreeDetection = builder
+                    .comment(String.join("\n",
+                            "Whether to detect large trees on background threads when felling, finishing the chop on a later server tick",
+                            "- Keeps large trees from slowing down the server tick, but felling them is delayed by at least one tick",
+                            "- Small trees, and chops that are not enough to fell a tree, are still handled right away"))
+                    .define("asyncTreeDetection", false);
+            asyncTreeDetectionThreads = builder
+                    .comment(String.join("\n",
+                            "Number of background threads used to detect trees when asyncTreeDetection = true (requires restart)",
+                            "- Trees chopped on the same tick are detected in parallel; set to 0 to use one thread per spare processor core"))
+                    .defineInRange("asyncTreeDetectionThreads", 0, 0, 64);
+            maxFellingBlocksPerTick = builder
+                    .comment(String.join("\n",
+                            "Maximum number of blocks to break per server tick when felling; bigger trees fall over several ticks, from the top down",
+                            "- Set to 0 to always fell trees all at once"))
+                    .defineInRange("maxFellingBlocksPerTick", 0, 0, 65536);
+            maxFellingMicrosecondsPerTick = builder
+                    .comment("Maximum time in microseconds to spend breaking blocks per server tick when maxFellingBlocksPerTick > 0")
+                    .defineInRange("maxFellingMicrosecondsPerTick", 2000, 1, 50000);
+            maxTreeBlocksPerTick = builder
+                    .comment(String.join("\n",
+                            "Maximum number of blocks that chopping can change per server tick, shared by all players; chops beyond this are queued for later ticks",
+                            "- Set to 0 for no limit"))
+                    .defineInRange("maxTreeBlocksPerTick", 0, 0, 1000000);
+            maxQueuedChops = builder
+                    .comment("Maximum number of chops waiting for maxTreeBlocksPerTick when it is > 0; chops beyond this are canceled")
+                    .defineInRange("maxQueuedChops", 64, 0, 4096);
+            maxChopsPerSecondPerPlayer = builder
+                    .comment(String.join("\n",
+                            "Maximum average number of chops per second for each player; chops beyond this are canceled",
+                            "- Set to 0 for no limit"))
+                    .defineInRange("maxChopsPerSecondPerPlayer", 0.0, 0.0, 1000.0);
+            maxChopBurstPerPlayer = builder
+                    .comment("Number of chops a player can make in quick succession before maxChopsPerSecondPerPlayer applies, when it is > 0")
+                    .defineInRange("maxChopBurstPerPlayer", 20, 1, 1000);
+            statsCsvIntervalSeconds = builder
+                    .comment(String.join("\n",
+                            "How often in seconds to append the chopping stats shown by /treechop stats to logs/treechop-stats.csv",
+                            "- Set to 0 to disable"))
+                    .defineInRange("statsCsvIntervalSeconds", 0, 0, 86400);
+            builder.pop();
+
             builder.push("compatibility");
             builder.push("general");
             preventChoppingOnRightClick = builder
@@ -381,6 +450,7 @@ public class ConfigHandler {
         public final ForgeConfigSpec.BooleanValue removeBarkOnInteriorLogs;
         public final ForgeConfigSpec.IntValue indicatorXOffset;
         public final ForgeConfigSpec.IntValue indicatorYOffset;
+        public final ForgeConfigSpec.BooleanValue indicatorDetectsTreesInBackground;
         public final ForgeConfigSpec.BooleanValue showFellingOptions;
         public final ForgeConfigSpec.BooleanValue showFeedbackMessages;
 
@@ -423,6 +493,11 @@ public class ConfigHandler {
             indicatorYOffset = builder
                     .comment("Vertical location of the indicator relative to the player's crosshairs; positive values move the indicator down")
                     .defineInRange("yOffset", 0, -256, 256);
+            indicatorDetectsTreesInBackground = builder
+                    .comment(String.join("\n",
+                            "Whether to detect trees for the indicator on a background thread instead of while rendering",
+                            "- Avoids stutters when looking across large trees, but the indicator may appear a few frames late"))
+                    .define("detectTreesInBackground", false);
             builder.pop();
             builder.pop();
 
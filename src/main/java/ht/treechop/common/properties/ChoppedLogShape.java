@@ -2,6 +2,7 @@ package ht.treechop.common.properties;
 
 import ht.treechop.common.config.ConfigHandler;
 import ht.treechop.common.util.FaceShape;
+import net.minecraft.block.Block;
 import net.minecraft.util.Direction;
 import net.minecraft.util.IStringSerializable;
 import net.minecraft.util.math.AxisAlignedBB;
@@ -9,9 +10,6 @@ import net.minecraft.util.math.shapes.VoxelShape;
 import net.minecraft.util.math.shapes.VoxelShapes;
 
 import java.util.Arrays;
-import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import static ht.treechop.common.util.DirectionBitMasks.DOWN;
 import static ht.treechop.common.util.DirectionBitMasks.EAST;
@@ -80,7 +78,14 @@ public enum ChoppedLogShape implements IStringSerializable {
 
     private final String name;
     private final byte openSides;
-    private final Map<Integer, AxisAlignedBB> chopsBoxes;
+    // Indexed by chops; index 0 is unused
+    private final AxisAlignedBB[] chopsBoxes;
+    private final VoxelShape[] chopsShapes;
+    // Indexed by chops * 6 + direction ordinal; the position of the side facing each direction, in pixels
+    private final float[] chopsExtents;
+
+    private static final int MAX_NUM_CHOPS = 7;
+    private static final int NUM_DIRECTIONS = 6;
 
     private static final ChoppedLogShape[] openSidesMap
             = new ChoppedLogShape[(NORTH | SOUTH | EAST | WEST | UP | DOWN) + 1];
@@ -103,12 +108,20 @@ public enum ChoppedLogShape implements IStringSerializable {
         this.name = name;
         this.openSides = (byte) openSides;
 
-        this.chopsBoxes = IntStream.rangeClosed(1, 7)
-                .boxed()
-                .collect(Collectors.toMap(
-                        chops -> chops,
-                        this::bakeBoundingBox
-                ));
+        this.chopsBoxes = new AxisAlignedBB[MAX_NUM_CHOPS + 1];
+        this.chopsShapes = new VoxelShape[MAX_NUM_CHOPS + 1];
+        this.chopsExtents = new float[(MAX_NUM_CHOPS + 1) * NUM_DIRECTIONS];
+        for (int chops = 1; chops <= MAX_NUM_CHOPS; ++chops) {
+            AxisAlignedBB box = bakeBoundingBox(chops);
+            chopsBoxes[chops] = box;
+            chopsShapes[chops] = Block.makeCuboidShape(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ);
+            for (Direction direction : Direction.values()) {
+                double extent = (direction.getAxisDirection() == Direction.AxisDirection.POSITIVE)
+                        ? box.getMax(direction.getAxis())
+                        : box.getMin(direction.getAxis());
+                chopsExtents[chops * NUM_DIRECTIONS + direction.ordinal()] = (float) extent;
+            }
+        }
 
         // NOTE: this must be kept independent of dynamics (e.g. world, pos) since it is used to bake models
         this.occlusionShape = VoxelShapes.or(
@@ -160,8 +173,22 @@ public enum ChoppedLogShape implements IStringSerializable {
         );
     }
 
+    /**
+     * @return the box in pixels (sixteenths of a block)
+     */
     public AxisAlignedBB getBoundingBox(int chops) {
-        return chopsBoxes.get(chops);
+        return chopsBoxes[chops];
+    }
+
+    public VoxelShape getVoxelShape(int chops) {
+        return chopsShapes[chops];
+    }
+
+    /**
+     * @return the position in pixels along {@code side}'s axis of the bounding box face that faces {@code side}
+     */
+    public float getExtent(int chops, Direction side) {
+        return chopsExtents[chops * NUM_DIRECTIONS + side.ordinal()];
     }
 
     public boolean isSideOpen(Direction side) {
@@ -0,0 +1,97 @@
+package ht.treechop.common.util;
+
+import ht.treechop.api.IChoppableBlock;
+import ht.treechop.common.config.ConfigHandler;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.LeavesBlock;
+import net.minecraft.tags.ITag;
+
+/**
+ * Caches what TreeChop needs to know about each block state in a table indexed by block state ID, so that checks
+ * made for every block visited while scanning a tree do not have to query tags and block state properties.
+ * The table must be rebuilt with {@link #update} whenever the tags or relevant config values change.
+ */
+public class BlockClassifier {
+
+    public static final byte LOG = 1;
+    public static final byte LEAVES = 1 << 1;
+    public static final byte PERSISTENT_LEAVES = 1 << 2;
+    public static final byte CHOPPABLE_BLOCK = 1 << 3;
+    public static final byte LEAVES_BLOCK_CLASS = 1 << 4;
+
+    private static volatile byte[] classifications = null;
+
+    public static void update(ITag<Block> logsTag, ITag<Block> leavesTag, boolean ignorePersistentLeaves) {
+        if (logsTag == null || leavesTag == null) {
+            classifications = null;
+            return;
+        }
+
+        byte[] newClassifications = new byte[Block.BLOCK_STATE_IDS.size()];
+        for (BlockState blockState : Block.BLOCK_STATE_IDS) {
+            int id = Block.BLOCK_STATE_IDS.getId(blockState);
+            if (id >= 0 && id < newClassifications.length) {
+                newClassifications[id] = classify(blockState, logsTag, leavesTag, ignorePersistentLeaves);
+            }
+        }
+
+        classifications = newClassifications;
+    }
+
+    /**
+     * @return a bitfield of {@link #LOG}, {@link #LEAVES}, {@link #PERSISTENT_LEAVES}, {@link #CHOPPABLE_BLOCK} and
+     * {@link #LEAVES_BLOCK_CLASS}
+     */
+    public static byte get(BlockState blockState) {
+        byte[] table = classifications;
+        if (table != null) {
+            int id = Block.BLOCK_STATE_IDS.getId(blockState);
+            if (id >= 0 && id < table.length) {
+                return table[id];
+            }
+        }
+
+        return classify(
+                blockState,
+                ConfigHandler.blockTagForDetectingLogs,
+                ConfigHandler.blockTagForDetectingLeaves,
+                ConfigHandler.ignorePersistentLeaves
+        );
+    }
+
+    public static boolean is(BlockState blockState, byte classification) {
+        return (get(blockState) & classification) != 0;
+    }
+
+    private static byte classify(BlockState blockState, ITag<Block> logsTag, ITag<Block> leavesTag, boolean ignorePersistentLeaves) {
+        Block block = blockState.getBlock();
+        byte classification = 0;
+
+        if (logsTag != null && blockState.isIn(logsTag)) {
+            classification |= LOG;
+        }
+
+        if (leavesTag != null && block.isIn(leavesTag)) {
+            boolean persistent = blockState.hasProperty(LeavesBlock.PERSISTENT) && blockState.get(LeavesBlock.PERSISTENT);
+            if (persistent) {
+                classification |= PERSISTENT_LEAVES;
+            }
+
+            if (!ignorePersistentLeaves || !persistent) {
+                classification |= LEAVES;
+            }
+        }
+
+        if (block instanceof IChoppableBlock) {
+            classification |= CHOPPABLE_BLOCK;
+        }
+
+        if (block instanceof LeavesBlock) {
+            classification |= LEAVES_BLOCK_CLASS;
+        }
+
+        return classification;
+    }
+
+}
@@ -8,6 +8,9 @@ import java.util.stream.Stream;
 public class BlockNeighbors {
 
     protected final BlockPos[] blocks;
+    private final int[] xOffsets;
+    private final int[] yOffsets;
+    private final int[] zOffsets;
 
     static public final BlockNeighbors HORIZONTAL_ADJACENTS = new BlockNeighbors(Stream.of(
             new BlockPos(-1, 0, 0),
@@ -96,6 +99,25 @@ public class BlockNeighbors {
 
     public BlockNeighbors(BlockPos[] blocks) {
         this.blocks = blocks;
+        this.xOffsets = Arrays.stream(blocks).mapToInt(BlockPos::getX).toArray();
+        this.yOffsets = Arrays.stream(blocks).mapToInt(BlockPos::getY).toArray();
+        this.zOffsets = Arrays.stream(blocks).mapToInt(BlockPos::getZ).toArray();
+    }
+
+    public int size() {
+        return blocks.length;
+    }
+
+    /**
+     * @param pos a position packed with {@link BlockPos#toLong()}
+     * @return the packed position of the {@code index}th neighbor of {@code pos}
+     */
+    public long offset(long pos, int index) {
+        return BlockPos.pack(
+                BlockPos.unpackX(pos) + xOffsets[index],
+                BlockPos.unpackY(pos) + yOffsets[index],
+                BlockPos.unpackZ(pos) + zOffsets[index]
+        );
     }
 
     protected Stream<BlockPos> asStream() {
@@ -0,0 +1,31 @@
+package ht.treechop.common.util;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IWorld;
+
+/**
+ * Reads block states directly from chunk sections, remembering the most recently used section and every state that
+ * has been read. Only use for the duration of one scan; changes made to the world afterwards will not be seen.
+ */
+public class CachedBlockStateReader extends SectionBlockStateReader {
+
+    private final Long2ObjectOpenHashMap<BlockState> states = new Long2ObjectOpenHashMap<>();
+
+    public CachedBlockStateReader(IWorld world) {
+        super(world);
+    }
+
+    @Override
+    public BlockState getBlockState(long pos) {
+        BlockState blockState = states.get(pos);
+        if (blockState == null) {
+            blockState = readBlockState(BlockPos.unpackX(pos), BlockPos.unpackY(pos), BlockPos.unpackZ(pos));
+            states.put(pos, blockState);
+            ChopStats.numBlockStateReads.increment();
+        }
+        return blockState;
+    }
+
+}
@@ -1,23 +1,19 @@
 package ht.treechop.common.util;
 
 import com.google.common.collect.Lists;
-import net.minecraft.block.Block;
+import ht.treechop.server.FellingScheduler;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
-import net.minecraft.enchantment.EnchantmentHelper;
-import net.minecraft.enchantment.Enchantments;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.ItemStack;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
-import net.minecraft.world.server.ServerWorld;
-import net.minecraftforge.common.util.FakePlayerFactory;
 
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -26,6 +22,9 @@ public class ChopResult {
 
     private final List<TreeBlock> blocks;
     private final boolean felling;
+    private Collection<BlockPos> detectedLeaves = null;
+    private ScannedLeaves scannedLeaves = null;
+    private int numBlocksChanged = 0;
 
     public static final int MAX_NUM_FELLING_EFFECTS = 32;
 
@@ -48,6 +47,25 @@ public class ChopResult {
         );
     }
 
+    /**
+     * Uses leaves that were already detected, for example off the main thread, instead of searching for leaves when
+     * applied. Positions that are no longer leaves by then are skipped.
+     */
+    public void setDetectedLeaves(Collection<BlockPos> leaves) {
+        if (this != IGNORED) {
+            detectedLeaves = leaves;
+        }
+    }
+
+    /**
+     * Lets the search for leaves when applied carry on from the leaves found while scanning for logs.
+     */
+    public void setScannedLeaves(ScannedLeaves scannedLeaves) {
+        if (this != IGNORED) {
+            this.scannedLeaves = scannedLeaves;
+        }
+    }
+
     /**
      *  Applies the results of chopping to the world, spawning the appropriate drops.
      * - Chopped blocks: harvest by agent, change to chopped state
@@ -56,8 +74,18 @@ public class ChopResult {
      * @return true if changes were able to be applied
      */
     public boolean apply(BlockPos targetPos, PlayerEntity agent, ItemStack tool, boolean breakLeaves) {
+        long startTime = System.nanoTime();
+        boolean applied = applyUntimed(targetPos, agent, tool, breakLeaves);
+        ChopStats.applyNanos.record(System.nanoTime() - startTime);
+        return applied;
+    }
+
+    private boolean applyUntimed(BlockPos targetPos, PlayerEntity agent, ItemStack tool, boolean breakLeaves) {
         World world = agent.getEntityWorld();
 
+        // The result may be applied ticks after it was detected, so don't reuse the reader used to detect it
+        IBlockStateReader reader = new CachedBlockStateReader(world);
+
         AtomicBoolean somethingChanged = new AtomicBoolean(false);
         List<TreeBlock> logs = blocks.stream()
                 .filter(treeBlock -> !somethingChanged.get() && ChopUtil.canChangeBlock(
@@ -68,7 +96,7 @@ public class ChopResult {
 
                 ))
                 .peek(treeBlock -> {
-                    BlockState blockState = world.getBlockState(treeBlock.getPos());
+                    BlockState blockState = reader.getBlockState(treeBlock.getPos());
                     somethingChanged.compareAndSet(false, blockState.getBlock().isAir(blockState, world, treeBlock.getPos()));
                 })
                 .collect(Collectors.toList());
@@ -77,92 +105,53 @@ public class ChopResult {
             return false;
         }
 
+        LongArrayList logPositions = new LongArrayList(logs.size());
+        logs.forEach(log -> logPositions.add(log.getPos().toLong()));
+        TreeModel model = TreeModel.build(logPositions, scannedLeaves);
+
         List<TreeBlock> leaves = (felling && breakLeaves)
-                ? ChopUtil.getTreeLeaves(
-                                world,
-                                logs.stream().map(TreeBlock::getPos).collect(Collectors.toList())
-                        )
-                        .stream()
+                ? getLeaves(reader, logs, model).stream()
                         .filter(pos -> ChopUtil.canChangeBlock(world, pos, agent))
                         .map(pos -> new TreeBlock(world, pos, Blocks.AIR.getDefaultState()))
                         .collect(Collectors.toList())
                 : Lists.newArrayList();
 
-        int numLogsAndLeaves = logs.size() + leaves.size();
-
-        if (!world.isRemote() && !agent.isCreative()) {
-            int fortune = EnchantmentHelper.getEnchantmentLevel(Enchantments.FORTUNE, tool);
-            int silkTouch = EnchantmentHelper.getEnchantmentLevel(Enchantments.SILK_TOUCH, tool);
-
-            AtomicInteger xpAccumulator = new AtomicInteger(0);
-
-            PlayerEntity fakePlayer = (world instanceof ServerWorld)
-                    ? FakePlayerFactory.getMinecraft((ServerWorld) world)
-                    : agent;
-
-            Stream.of(logs, leaves)
-                    .flatMap(Collection::stream)
-                    .forEach(treeBlock -> {
-                        if (treeBlock.wasChopped()) {
-                            harvestWorldBlock(agent, tool, xpAccumulator, fortune, silkTouch, treeBlock);
-                        } else {
-                            harvestWorldBlock(fakePlayer, ItemStack.EMPTY, xpAccumulator, 0, 0, treeBlock);
-                        }
-                    });
-
-            ChopUtil.dropExperience(world, targetPos, xpAccumulator.get());
+        Felling treeFelling = new Felling(world, targetPos, agent, tool, !world.isRemote() && !agent.isCreative(), model, logs, leaves);
+        numBlocksChanged = treeFelling.size();
+        ChopStats.numBlocksChanged.add(numBlocksChanged);
+        ChopStats.numLeavesRemoved.add(leaves.size());
+        if (felling && FellingScheduler.shouldSchedule(world, treeFelling.size())) {
+            FellingScheduler.schedule(treeFelling);
+        } else {
+            treeFelling.applyAll();
         }
 
-        int numEffects = Math.min((int) Math.ceil(Math.sqrt(numLogsAndLeaves)), MAX_NUM_FELLING_EFFECTS) - 1;
-
-        Collections.shuffle(logs);
-        Collections.shuffle(leaves);
-        int numLeavesEffects = Math.max(0, (int) Math.ceil(numEffects * ((double) leaves.size() / (double) numLogsAndLeaves)));
-        int numLogsEffects = Math.max(0, numEffects - numLeavesEffects);
-
-        Stream.of(
-                logs.stream().limit(numLogsEffects),
-                leaves.stream().limit(numLeavesEffects)
-        )
-                .flatMap(a->a)
-                .forEach(
-                        treeBlock -> world.playEvent(
-                                2001,
-                                treeBlock.getPos(),
-                                Block.getStateId(world.getBlockState(treeBlock.getPos()))
-                        )
-                );
-
-        Stream.of(logs, leaves)
-                .flatMap(Collection::stream)
-                .forEach(
-                        treeBlock -> treeBlock.getWorld().setBlockState(
-                                treeBlock.getPos(),
-                                treeBlock.getState(),
-                                3
-                        )
-                );
-
         return true;
     }
 
-    private static void harvestWorldBlock(
-            PlayerEntity agent,
-            ItemStack tool,
-            AtomicInteger totalXp,
-            int fortune,
-            int silkTouch,
-            TreeBlock treeBlock
-    ) {
-        World world = treeBlock.getWorld();
-        BlockPos pos = treeBlock.getPos();
-        BlockState blockState = world.getBlockState(pos);
-        blockState.getBlock().harvestBlock(
-                world, agent, pos, blockState, world.getTileEntity(pos), tool
-        );
-        totalXp.getAndAdd(
-                blockState.getExpDrop(world, pos, fortune, silkTouch)
-        );
+    public boolean isFelling() {
+        return felling;
+    }
+
+    /**
+     * @return the number of logs and leaves changed by {@link #apply}, including any that are yet to be changed by a
+     * scheduled felling
+     */
+    public int getNumBlocksChanged() {
+        return numBlocksChanged;
+    }
+
+    private Collection<BlockPos> getLeaves(IBlockStateReader reader, List<TreeBlock> logs, TreeModel model) {
+        if (detectedLeaves != null) {
+            return detectedLeaves.stream()
+                    .filter(pos -> ChopUtil.isBlockLeaves(reader, pos.toLong()))
+                    .collect(Collectors.toList());
+        } else if (model.isKnownToBeLeafless()) {
+            return Collections.emptyList();
+        } else {
+            List<BlockPos> logPositions = logs.stream().map(TreeBlock::getPos).collect(Collectors.toList());
+            return ChopUtil.getTreeLeaves(reader, logPositions, scannedLeaves);
+        }
     }
 
 }
@@ -0,0 +1,197 @@
+package ht.treechop.common.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms for the costly parts of chopping. Recording is cheap and safe from any thread, including the
+ * threads that detect trees in the background.
+ */
+public class ChopStats {
+
+    public static final LongAdder numBlockStateReads = new LongAdder();
+    public static final LongAdder numTreeBlocksScanned = new LongAdder();
+    public static final LongAdder numTreesAtMaxSize = new LongAdder();
+    public static final LongAdder numLeavesScanned = new LongAdder();
+    public static final LongAdder numLeavesAtMaxSize = new LongAdder();
+    public static final LongAdder numLeavesRemoved = new LongAdder();
+    public static final LongAdder numBlocksChanged = new LongAdder();
+
+    public static final Histogram breakEventNanos = new Histogram("chop");
+    public static final Histogram treeScanNanos = new Histogram("tree_scan");
+    public static final Histogram leavesScanNanos = new Histogram("leaves_scan");
+    public static final Histogram chopTreeNanos = new Histogram("chop_tree");
+    public static final Histogram applyNanos = new Histogram("apply");
+    public static final Histogram treeSizes = new Histogram("tree_size");
+    public static final Histogram leavesSizes = new Histogram("leaves_size");
+
+    private static final Histogram[] latencyHistograms = {breakEventNanos, treeScanNanos, leavesScanNanos, chopTreeNanos, applyNanos};
+    private static final Histogram[] sizeHistograms = {treeSizes, leavesSizes};
+    private static final LongAdder[] counters = {numBlockStateReads, numTreeBlocksScanned, numTreesAtMaxSize, numLeavesScanned, numLeavesAtMaxSize, numLeavesRemoved, numBlocksChanged};
+    private static final String[] counterNames = {"block_state_reads", "tree_blocks_scanned", "trees_at_max_size", "leaves_scanned", "leaves_at_max_size", "leaves_removed", "blocks_changed"};
+
+    private static volatile long startTime = System.currentTimeMillis();
+
+    public static void reset() {
+        for (LongAdder counter : counters) {
+            counter.reset();
+        }
+        for (Histogram histogram : latencyHistograms) {
+            histogram.reset();
+        }
+        for (Histogram histogram : sizeHistograms) {
+            histogram.reset();
+        }
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return a human-readable summary, one line per entry
+     */
+    public static List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("Since %d seconds ago:", (System.currentTimeMillis() - startTime) / 1000));
+        for (Histogram histogram : latencyHistograms) {
+            lines.add(String.format("%s: n=%d p50=%s p99=%s max=%s",
+                    histogram.getName(),
+                    histogram.getCount(),
+                    formatNanos(histogram.getPercentile(0.5)),
+                    formatNanos(histogram.getPercentile(0.99)),
+                    formatNanos(histogram.getMax())
+            ));
+        }
+        for (Histogram histogram : sizeHistograms) {
+            lines.add(String.format("%s: n=%d p50=%d p99=%d max=%d",
+                    histogram.getName(),
+                    histogram.getCount(),
+                    histogram.getPercentile(0.5),
+                    histogram.getPercentile(0.99),
+                    histogram.getMax()
+            ));
+        }
+        for (int i = 0; i < counters.length; ++i) {
+            lines.add(String.format("%s: %d", counterNames[i], counters[i].sum()));
+        }
+        return lines;
+    }
+
+    public static String getCsvHeader() {
+        List<String> columns = new ArrayList<>();
+        columns.add("time");
+        for (Histogram histogram : latencyHistograms) {
+            columns.add(histogram.getName() + "_count");
+            columns.add(histogram.getName() + "_p50_us");
+            columns.add(histogram.getName() + "_p99_us");
+            columns.add(histogram.getName() + "_max_us");
+        }
+        for (Histogram histogram : sizeHistograms) {
+            columns.add(histogram.getName() + "_p50");
+            columns.add(histogram.getName() + "_p99");
+            columns.add(histogram.getName() + "_max");
+        }
+        for (String name : counterNames) {
+            columns.add(name);
+        }
+        return String.join(",", columns);
+    }
+
+    public static String getCsvRow() {
+        List<String> values = new ArrayList<>();
+        values.add(Long.toString(System.currentTimeMillis()));
+        for (Histogram histogram : latencyHistograms) {
+            values.add(Long.toString(histogram.getCount()));
+            values.add(Long.toString(histogram.getPercentile(0.5) / 1000));
+            values.add(Long.toString(histogram.getPercentile(0.99) / 1000));
+            values.add(Long.toString(histogram.getMax() / 1000));
+        }
+        for (Histogram histogram : sizeHistograms) {
+            values.add(Long.toString(histogram.getPercentile(0.5)));
+            values.add(Long.toString(histogram.getPercentile(0.99)));
+            values.add(Long.toString(histogram.getMax()));
+        }
+        for (LongAdder counter : counters) {
+            values.add(Long.toString(counter.sum()));
+        }
+        return String.join(",", values);
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 1000000) {
+            return String.format("%.1fus", nanos / 1000.0);
+        } else {
+            return String.format("%.2fms", nanos / 1000000.0);
+        }
+    }
+
+    /**
+     * Counts non-negative values in power-of-two buckets. Percentiles are estimated as the upper bound of the bucket
+     * they fall in, so they are accurate to within a factor of two.
+     */
+    public static class Histogram {
+        private static final int NUM_BUCKETS = 64;
+
+        private final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private volatile long max = 0;
+
+        public Histogram(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void record(long value) {
+            value = Math.max(0, value);
+            buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value)); // Bucket i holds [2^(i-1), 2^i)
+            count.increment();
+            if (value > max) {
+                max = value; // Racy, but only ever off by a concurrent recording
+            }
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @param fraction between 0 and 1
+         */
+        public long getPercentile(double fraction) {
+            long total = 0;
+            long[] counts = new long[NUM_BUCKETS];
+            for (int i = 0; i < NUM_BUCKETS; ++i) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+
+            long rank = (long) Math.ceil(fraction * total);
+            long seen = 0;
+            for (int i = 0; i < NUM_BUCKETS; ++i) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    return Math.min(max, (i == 0) ? 0 : (1L << i) - 1);
+                }
+            }
+
+            return 0;
+        }
+
+        public void reset() {
+            for (int i = 0; i < NUM_BUCKETS; ++i) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            max = 0;
+        }
+    }
+
+}
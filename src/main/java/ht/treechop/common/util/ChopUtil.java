@@ -5,49 +5,74 @@ import ht.treechop.api.IChoppableBlock;
 import ht.treechop.api.IChoppingItem;
 import ht.treechop.common.block.ChoppedLogBlock;
 import ht.treechop.common.capabilities.ChopSettingsCapability;
+import ht.treechop.common.capabilities.ChunkChopIndex;
 import ht.treechop.common.config.ConfigHandler;
 import ht.treechop.common.event.ChopEvent;
 import ht.treechop.common.init.ModBlocks;
 import ht.treechop.common.properties.BlockStateProperties;
 import ht.treechop.common.properties.ChoppedLogShape;
 import ht.treechop.common.settings.ChopSettings;
+import it.unimi.dsi.fastutil.bytes.ByteIterator;
+import it.unimi.dsi.fastutil.longs.Long2ByteMap;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.block.LeavesBlock;
+import net.minecraft.entity.item.ExperienceOrbEntity;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
+import net.minecraft.util.Direction;
 import net.minecraft.util.Hand;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.vector.Vector3i;
+import net.minecraft.util.math.MutableBoundingBox;
 import net.minecraft.world.IWorld;
+import net.minecraft.world.GameRules;
 import net.minecraft.world.World;
 import net.minecraft.world.server.ServerWorld;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.common.util.LazyOptional;
+import net.minecraftforge.registries.ForgeRegistries;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import java.util.function.Function;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.Supplier;
 
 public class ChopUtil {
 
+    private static final int MAX_NUM_NEARBY_CHOPPABLE_BLOCKS = 64;
+
     private static ChopSettingsCapability FAKE_PLAYER_CHOP_SETTINGS;
+    private static TreeCache treeCache = TreeCache.NONE;
+    private static Boolean allChoppableBlocksIndexed = null;
+
+    /**
+     * @param cache remembers trees between chops; {@link TreeCache#NONE} to stop remembering them
+     */
+    public static void setTreeCache(TreeCache cache) {
+        treeCache = cache;
+    }
 
     public static boolean isBlockChoppable(IWorld world, BlockPos pos, BlockState blockState) {
-        return (blockState.getBlock() instanceof IChoppableBlock) ||
+        return BlockClassifier.is(blockState, BlockClassifier.CHOPPABLE_BLOCK) ||
                 (isBlockALog(blockState) && !(isBlockALog(world, pos.west()) && isBlockALog(world, pos.north()) && isBlockALog(world, pos.east()) && isBlockALog(world, pos.south())));
     }
 
@@ -55,51 +80,49 @@ public class ChopUtil {
         return isBlockChoppable(world, pos, world.getBlockState(pos));
     }
 
+    public static boolean isBlockChoppable(IBlockStateReader reader, long pos, BlockState blockState) {
+        byte classification = BlockClassifier.get(blockState);
+        if ((classification & BlockClassifier.CHOPPABLE_BLOCK) != 0) {
+            return true;
+        } else if ((classification & BlockClassifier.LOG) != 0) {
+            int x = BlockPos.unpackX(pos);
+            int y = BlockPos.unpackY(pos);
+            int z = BlockPos.unpackZ(pos);
+            return !(isBlockALog(reader, BlockPos.pack(x - 1, y, z))
+                    && isBlockALog(reader, BlockPos.pack(x, y, z - 1))
+                    && isBlockALog(reader, BlockPos.pack(x + 1, y, z))
+                    && isBlockALog(reader, BlockPos.pack(x, y, z + 1)));
+        } else {
+            return false;
+        }
+    }
+
+    public static boolean isBlockChoppable(IBlockStateReader reader, long pos) {
+        return isBlockChoppable(reader, pos, reader.getBlockState(pos));
+    }
+
     public static boolean isBlockALog(BlockState blockState) {
-        return blockState.isIn(ConfigHandler.blockTagForDetectingLogs);
+        return BlockClassifier.is(blockState, BlockClassifier.LOG);
     }
 
     public static boolean isBlockALog(IWorld world, BlockPos pos) {
         return isBlockALog(world.getBlockState(pos));
     }
 
-    public static boolean isBlockLeaves(IWorld world, BlockPos pos) {
-        return isBlockLeaves(world.getBlockState(pos));
+    public static boolean isBlockALog(IBlockStateReader reader, long pos) {
+        return isBlockALog(reader.getBlockState(pos));
     }
 
-    public static boolean isBlockLeaves(BlockState blockState) {
-        if (blockState.getBlock().isIn(ConfigHandler.blockTagForDetectingLeaves)) {
-            return !ConfigHandler.ignorePersistentLeaves || !blockState.hasProperty(LeavesBlock.PERSISTENT) || !blockState.get(LeavesBlock.PERSISTENT);
-        } else {
-            return false;
-        }
+    public static boolean isBlockLeaves(IWorld world, BlockPos pos) {
+        return isBlockLeaves(world.getBlockState(pos));
     }
 
-    public static Set<BlockPos> getConnectedBlocks(Collection<BlockPos> startingPoints, Function<BlockPos, Stream<BlockPos>> searchOffsetsSupplier, int maxNumBlocks, AtomicInteger iterationCounter) {
-        Set<BlockPos> connectedBlocks = new HashSet<>();
-        List<BlockPos> newConnectedBlocks = new LinkedList<>(startingPoints);
-        iterationCounter.set(0);
-        do {
-            connectedBlocks.addAll(newConnectedBlocks);
-            if (connectedBlocks.size() >= maxNumBlocks) {
-                break;
-            }
-
-            newConnectedBlocks = newConnectedBlocks.stream()
-                    .flatMap(blockPos -> searchOffsetsSupplier.apply(blockPos)
-                            .filter(pos1 -> !connectedBlocks.contains(pos1))
-                    )
-                    .limit(maxNumBlocks - connectedBlocks.size())
-                    .collect(Collectors.toList());
-
-            iterationCounter.incrementAndGet();
-        } while (!newConnectedBlocks.isEmpty());
-
-        return connectedBlocks;
+    public static boolean isBlockLeaves(IBlockStateReader reader, long pos) {
+        return isBlockLeaves(reader.getBlockState(pos));
     }
 
-    public static Set<BlockPos> getConnectedBlocks(Collection<BlockPos> startingPoints, Function<BlockPos, Stream<BlockPos>> searchOffsetsSupplier, int maxNumBlocks) {
-        return getConnectedBlocks(startingPoints, searchOffsetsSupplier, maxNumBlocks, new AtomicInteger());
+    public static boolean isBlockLeaves(BlockState blockState) {
+        return BlockClassifier.is(blockState, BlockClassifier.LEAVES);
     }
 
     public static boolean canChangeBlock(World world, BlockPos blockPos, PlayerEntity agent) {
@@ -121,44 +144,157 @@ public class ChopUtil {
     }
 
     public static List<BlockPos> getTreeLeaves(World world, Collection<BlockPos> treeBlocks) {
-        AtomicInteger iterationCounter = new AtomicInteger();
-        Set<BlockPos> leaves = new HashSet<>();
+        return getTreeLeaves(new CachedBlockStateReader(world), treeBlocks);
+    }
+
+    public static List<BlockPos> getTreeLeaves(IBlockStateReader reader, Collection<BlockPos> treeBlocks) {
+        long startTime = System.nanoTime();
+        List<BlockPos> leaves = new ArrayList<>();
 
         int maxNumLeavesBlocks = ConfigHandler.COMMON.maxNumLeavesBlocks.get();
-        getConnectedBlocks(
-                treeBlocks,
-                pos1 -> {
-                    BlockState blockState = world.getBlockState(pos1);
-                    return ((isBlockLeaves(blockState) && !(blockState.getBlock() instanceof LeavesBlock))
+        try (FloodFill fill = FloodFill.acquire()) {
+            fill.addAll(treeBlocks);
+            fill.search(
+                    pos -> {
+                        byte classification = BlockClassifier.get(reader.getBlockState(pos));
+                        return ((classification & (BlockClassifier.LEAVES | BlockClassifier.LEAVES_BLOCK_CLASS)) == BlockClassifier.LEAVES)
                                 ? BlockNeighbors.ADJACENTS_AND_BELOW_ADJACENTS // Red mushroom caps can be connected diagonally downward
-                                : BlockNeighbors.ADJACENTS)
-                        .asStream(pos1)
-                        .filter(pos2 -> markLeavesToDestroyAndKeepLooking(world, pos2, iterationCounter, leaves));
-                },
-                maxNumLeavesBlocks,
-                iterationCounter
-        );
+                                : BlockNeighbors.ADJACENTS;
+                    },
+                    (pos, depth) -> {
+                        if (shouldDestroyLeaves(reader, pos, depth, fill.getCurrentPos())) {
+                            leaves.add(BlockPos.fromLong(pos));
+                            return true;
+                        } else {
+                            return false;
+                        }
+                    },
+                    maxNumLeavesBlocks
+            );
+        }
 
         if (leaves.size() >= maxNumLeavesBlocks) {
             TreeChopMod.LOGGER.warn(String.format("Max number of leaves reached: %d >= %d blocks", leaves.size(), maxNumLeavesBlocks));
+            ChopStats.numLeavesAtMaxSize.increment();
         }
 
-        return new ArrayList<>(leaves);
+        ChopStats.numLeavesScanned.add(leaves.size());
+        ChopStats.leavesSizes.record(leaves.size());
+        ChopStats.leavesScanNanos.record(System.nanoTime() - startTime);
+
+        return leaves;
     }
 
-    private static boolean markLeavesToDestroyAndKeepLooking(IWorld world, BlockPos pos, AtomicInteger iterationCounter, Set<BlockPos> leavesToDestroy) {
-        BlockState blockState = world.getBlockState(pos);
-        if (isBlockLeaves(blockState)) {
-            if (blockState.getBlock() instanceof LeavesBlock) {
-                if (iterationCounter.get() + 1 > blockState.get(LeavesBlock.DISTANCE)) {
-                    return false;
+    /**
+     * Like {@link #getTreeLeaves(IBlockStateReader, Collection)}, but starts from the leaves that were found next to
+     * the logs by {@link #scanTreeBlocks(IBlockStateReader, BlockPos, LongPredicate, AtomicBoolean, ScannedLeaves)}
+     * instead of reading around every log again. Logs that the scan did not see every side of are read as usual.
+     */
+    public static List<BlockPos> getTreeLeaves(IBlockStateReader reader, Collection<BlockPos> treeBlocks, @Nullable ScannedLeaves scannedLeaves) {
+        if (scannedLeaves == null) {
+            return getTreeLeaves(reader, treeBlocks);
+        }
+
+        long startTime = System.nanoTime();
+        List<BlockPos> leaves = new ArrayList<>();
+
+        int maxNumLeavesBlocks = ConfigHandler.COMMON.maxNumLeavesBlocks.get();
+        try (FloodFill fill = FloodFill.acquire()) {
+            LongOpenHashSet candidates = new LongOpenHashSet(scannedLeaves.getAdjacentLeaves());
+            for (BlockPos treeBlock : treeBlocks) {
+                long pos = treeBlock.toLong();
+                fill.addVisited(pos);
+                if (!scannedLeaves.hasLog(pos)) {
+                    for (int i = 0, n = BlockNeighbors.ADJACENTS.size(); i < n; ++i) {
+                        candidates.add(BlockNeighbors.ADJACENTS.offset(pos, i));
+                    }
                 }
-            } else if (iterationCounter.get() >= ConfigHandler.maxBreakLeavesDistance) {
-                return false;
             }
 
-            leavesToDestroy.add(pos);
-            return true;
+            // The leaves next to the logs are the first layer of the search; the logs themselves are never expanded
+            LongSet logs = fill.getVisited();
+            LongArrayList firstLayer = new LongArrayList();
+            for (LongIterator it = candidates.iterator(); it.hasNext(); ) {
+                long pos = it.nextLong();
+                if (!logs.contains(pos) && isNextToAny(logs, pos) && shouldDestroyLeaves(reader.getBlockState(pos), 1)) {
+                    firstLayer.add(pos);
+                }
+            }
+
+            for (int i = 0, n = firstLayer.size(); i < n && fill.size() < maxNumLeavesBlocks; ++i) {
+                long pos = firstLayer.getLong(i);
+                fill.add(pos);
+                leaves.add(BlockPos.fromLong(pos));
+            }
+
+            fill.search(
+                    pos -> {
+                        byte classification = BlockClassifier.get(reader.getBlockState(pos));
+                        return ((classification & (BlockClassifier.LEAVES | BlockClassifier.LEAVES_BLOCK_CLASS)) == BlockClassifier.LEAVES)
+                                ? BlockNeighbors.ADJACENTS_AND_BELOW_ADJACENTS
+                                : BlockNeighbors.ADJACENTS;
+                    },
+                    (pos, depth) -> {
+                        if (shouldDestroyLeaves(reader, pos, depth + 1, fill.getCurrentPos())) {
+                            leaves.add(BlockPos.fromLong(pos));
+                            return true;
+                        } else {
+                            return false;
+                        }
+                    },
+                    maxNumLeavesBlocks
+            );
+        }
+
+        if (leaves.size() >= maxNumLeavesBlocks) {
+            TreeChopMod.LOGGER.warn(String.format("Max number of leaves reached: %d >= %d blocks", leaves.size(), maxNumLeavesBlocks));
+            ChopStats.numLeavesAtMaxSize.increment();
+        }
+
+        ChopStats.numLeavesScanned.add(leaves.size());
+        ChopStats.leavesSizes.record(leaves.size());
+        ChopStats.leavesScanNanos.record(System.nanoTime() - startTime);
+
+        return leaves;
+    }
+
+    /**
+     * @param distance the number of steps between the leaves and the nearest log
+     * @param fromPos the log or leaves that the search reached {@code pos} from
+     */
+    static boolean shouldDestroyLeaves(IBlockStateReader reader, long pos, int distance, long fromPos) {
+        BlockState blockState = reader.getBlockState(pos);
+        if (!shouldDestroyLeaves(blockState, distance)) {
+            return false;
+        }
+
+        // Leaves that are no farther from logs than the block they were reached from are held up by another tree
+        if (ConfigHandler.followLeavesDistances && BlockClassifier.is(blockState, BlockClassifier.LEAVES_BLOCK_CLASS)) {
+            return blockState.get(LeavesBlock.DISTANCE) > getLeavesDistance(reader.getBlockState(fromPos), distance - 1);
+        }
+
+        return true;
+    }
+
+    private static int getLeavesDistance(BlockState blockState, int defaultDistance) {
+        byte classification = BlockClassifier.get(blockState);
+        if ((classification & BlockClassifier.LOG) != 0) {
+            return 0;
+        } else if ((classification & BlockClassifier.LEAVES_BLOCK_CLASS) != 0) {
+            return blockState.get(LeavesBlock.DISTANCE);
+        } else {
+            return defaultDistance;
+        }
+    }
+
+    private static boolean shouldDestroyLeaves(BlockState blockState, int distance) {
+        byte classification = BlockClassifier.get(blockState);
+        if ((classification & BlockClassifier.LEAVES) != 0) {
+            if ((classification & BlockClassifier.LEAVES_BLOCK_CLASS) != 0) {
+                return distance <= blockState.get(LeavesBlock.DISTANCE);
+            } else {
+                return distance <= ConfigHandler.maxBreakLeavesDistance;
+            }
         }
         return false;
     }
@@ -167,30 +303,160 @@ public class ChopUtil {
         return ConfigHandler.COMMON.chopCountingAlgorithm.get().calculate(numBlocks);
     }
 
+    public static ChopResult getChopResult(World world, BlockPos blockPos, PlayerEntity agent, int numChops, boolean fellIfPossible) {
+        CachedBlockStateReader reader = new CachedBlockStateReader(world);
+        return fellIfPossible
+                ? getChopResult(world, reader, blockPos, agent, numChops, pos -> isBlockALog(reader, pos), true)
+                : tryToChopWithoutFelling(world, reader, blockPos, numChops);
+    }
+
     public static ChopResult getChopResult(World world, BlockPos blockPos, PlayerEntity agent, int numChops, boolean fellIfPossible, Predicate<BlockPos> logCondition) {
+        CachedBlockStateReader reader = new CachedBlockStateReader(world);
         return fellIfPossible
-                ? getChopResult(world, blockPos, agent, numChops, logCondition)
-                : tryToChopWithoutFelling(world, blockPos, numChops);
+                ? getChopResult(world, reader, blockPos, agent, numChops, asLongPredicate(logCondition), false)
+                : tryToChopWithoutFelling(world, reader, blockPos, numChops);
     }
 
-    private static ChopResult getChopResult(World world, BlockPos blockPos, PlayerEntity agent, int numChops, Predicate<BlockPos> logCondition) {
-        Set<BlockPos> supportedBlocks = getTreeBlocks(world, blockPos, logCondition, getPlayerChopSettings(agent).getTreesMustHaveLeaves());
-        return chopTree(world, blockPos, supportedBlocks, numChops);
+    /**
+     * @param useTreeCache whether the tree can be remembered between chops; only if {@code logCondition} is the
+     * default one
+     */
+    private static ChopResult getChopResult(World world, IBlockStateReader reader, BlockPos blockPos, PlayerEntity agent, int numChops, LongPredicate logCondition, boolean useTreeCache) {
+        ScannedLeaves scannedLeaves = new ScannedLeaves();
+        Set<BlockPos> supportedBlocks = getTreeBlocks(
+                world,
+                reader,
+                blockPos,
+                logCondition,
+                getPlayerChopSettings(agent).getTreesMustHaveLeaves(),
+                trueHasLeaves -> {
+                    if (useTreeCache) {
+                        Set<BlockPos> rememberedTreeBlocks = treeCache.getTreeBlocks(world, blockPos, trueHasLeaves);
+                        if (rememberedTreeBlocks != null) {
+                            return rememberedTreeBlocks;
+                        }
+                    }
+
+                    Set<BlockPos> treeBlocks = scanTreeBlocks(reader, blockPos, logCondition, trueHasLeaves, scannedLeaves);
+                    if (useTreeCache) {
+                        treeCache.put(world, treeBlocks, trueHasLeaves.get());
+                    }
+                    return treeBlocks;
+                }
+        );
+        ChopResult chopResult = chopTree(world, reader, blockPos, supportedBlocks, numChops);
+        chopResult.setScannedLeaves(scannedLeaves);
+        return chopResult;
     }
 
-    private static Set<BlockPos> getTreeBlocks(World world, BlockPos blockPos, Predicate<BlockPos> logCondition, boolean mustHaveLeaves) {
+    /**
+     * Chops if it can be done without scanning more than {@code maxNumTreeBlocks} logs: either the tree is remembered
+     * or smaller than that, or it is at least that big and this chop is not enough to fell it. This relies on bigger
+     * trees never taking fewer chops to fell.
+     * @return the result, or {@code null} if the whole tree has to be scanned to tell
+     */
+    public static ChopResult getChopResultIfQuick(World world, BlockPos blockPos, PlayerEntity agent, int numChops, int maxNumTreeBlocks) {
+        CachedBlockStateReader reader = new CachedBlockStateReader(world);
+
+        AtomicBoolean rememberedHasLeaves = new AtomicBoolean(false);
+        Set<BlockPos> rememberedTreeBlocks = treeCache.getTreeBlocks(world, blockPos, rememberedHasLeaves);
+        if (rememberedTreeBlocks != null) {
+            return getChopResult(world, reader, blockPos, agent, numChops, rememberedTreeBlocks, rememberedHasLeaves.get(), null, null);
+        }
+
+        ScannedLeaves scannedLeaves = new ScannedLeaves();
+        AtomicBoolean hasLeaves = new AtomicBoolean(false);
+        maxNumTreeBlocks = Math.min(maxNumTreeBlocks, ConfigHandler.COMMON.maxNumTreeBlocks.get());
+        Set<BlockPos> treeBlocks = scanTreeBlocks(reader, blockPos, pos -> isBlockALog(reader, pos), hasLeaves, scannedLeaves, maxNumTreeBlocks);
+
+        if (treeBlocks.size() < maxNumTreeBlocks) {
+            treeCache.put(world, treeBlocks, hasLeaves.get());
+            return getChopResult(world, reader, blockPos, agent, numChops, treeBlocks, hasLeaves.get(), scannedLeaves, null);
+        }
+
+        // A tree without leaves so far might still turn out to have some
+        if (getPlayerChopSettings(agent).getTreesMustHaveLeaves() && !hasLeaves.get()) {
+            return null;
+        }
+
+        int minNumChopsToFell = numChopsToFell(treeBlocks.size());
+        if (getNumChops(reader.getBlockState(blockPos)) + numChops >= minNumChopsToFell) {
+            return null;
+        }
+
+        Long2ByteMap nearbyChoppedBlocks = getNearbyChoppedBlocks(world, reader, blockPos);
+        if (getNumChops(nearbyChoppedBlocks) + numChops >= minNumChopsToFell) {
+            return null;
+        }
+
+        // Only part of the tree was scanned, so it can't be remembered
+        return getChopResult(world, reader, blockPos, agent, numChops, treeBlocks, hasLeaves.get(), null, nearbyChoppedBlocks);
+    }
+
+    /**
+     * Gives {@code condition} a new position each time, since callers' conditions may hold on to it.
+     */
+    private static LongPredicate asLongPredicate(Predicate<BlockPos> condition) {
+        return pos -> condition.test(BlockPos.fromLong(pos));
+    }
+
+    /**
+     * Chops using the results of a {@link #scanTreeBlocks} that was already done, for example off the main thread.
+     * The caller must make sure that {@code scannedTreeBlocks} are all still logs.
+     */
+    public static ChopResult getChopResult(World world, BlockPos blockPos, PlayerEntity agent, int numChops, Set<BlockPos> scannedTreeBlocks, boolean scannedHasLeaves) {
+        treeCache.put(world, scannedTreeBlocks, scannedHasLeaves);
+        return getChopResult(world, new CachedBlockStateReader(world), blockPos, agent, numChops, new HashSet<>(scannedTreeBlocks), scannedHasLeaves, null, null);
+    }
+
+    /**
+     * @param scannedTreeBlocks the logs of the tree; changed by chopping
+     * @param scannedLeaves if not {@code null}, the leaves found while scanning {@code scannedTreeBlocks}
+     * @param nearbyChoppedBlocks if not {@code null}, the result of {@link #getNearbyChoppedBlocks} for {@code blockPos}
+     */
+    private static ChopResult getChopResult(World world, IBlockStateReader reader, BlockPos blockPos, PlayerEntity agent, int numChops, Set<BlockPos> scannedTreeBlocks, boolean scannedHasLeaves, @Nullable ScannedLeaves scannedLeaves, @Nullable Long2ByteMap nearbyChoppedBlocks) {
+        Set<BlockPos> supportedBlocks = getTreeBlocks(
+                world,
+                reader,
+                blockPos,
+                pos -> isBlockALog(reader, pos),
+                getPlayerChopSettings(agent).getTreesMustHaveLeaves(),
+                trueHasLeaves -> {
+                    trueHasLeaves.set(scannedHasLeaves);
+                    return scannedTreeBlocks;
+                }
+        );
+        ChopResult chopResult = chopTree(world, reader, blockPos, supportedBlocks, numChops, nearbyChoppedBlocks);
+        if (scannedLeaves != null) {
+            chopResult.setScannedLeaves(scannedLeaves);
+        }
+        return chopResult;
+    }
+
+    private static Set<BlockPos> getTreeBlocks(World world, IBlockStateReader reader, BlockPos blockPos, LongPredicate logCondition, boolean mustHaveLeaves) {
+        return getTreeBlocks(world, reader, blockPos, logCondition, mustHaveLeaves, trueHasLeaves -> scanTreeBlocks(reader, blockPos, logCondition, trueHasLeaves));
+    }
+
+    private static Set<BlockPos> getTreeBlocks(World world, IBlockStateReader reader, BlockPos blockPos, LongPredicate logCondition, boolean mustHaveLeaves, Function<AtomicBoolean, Set<BlockPos>> scanner) {
         AtomicBoolean hasLeaves = new AtomicBoolean(!mustHaveLeaves);
-        Set<BlockPos> treeBlocks = getTreeBlocks(world, blockPos, logCondition, hasLeaves);
+        Set<BlockPos> treeBlocks = getTreeBlocks(world, reader, blockPos, logCondition, hasLeaves, scanner);
         return hasLeaves.get() ? treeBlocks : Collections.emptySet();
     }
 
-    private static Set<BlockPos> getTreeBlocks(World world, BlockPos blockPos, Predicate<BlockPos> logCondition, AtomicBoolean inHasLeaves) {
-        if (!logCondition.test(blockPos)) {
+    private static Set<BlockPos> getTreeBlocks(World world, IBlockStateReader reader, BlockPos blockPos, LongPredicate logCondition, AtomicBoolean inHasLeaves) {
+        return getTreeBlocks(world, reader, blockPos, logCondition, inHasLeaves, trueHasLeaves -> scanTreeBlocks(reader, blockPos, logCondition, trueHasLeaves));
+    }
+
+    /**
+     * @param scanner finds the tree blocks, setting its argument to whether the tree has leaves
+     */
+    private static Set<BlockPos> getTreeBlocks(World world, IBlockStateReader reader, BlockPos blockPos, LongPredicate logCondition, AtomicBoolean inHasLeaves, Function<AtomicBoolean, Set<BlockPos>> scanner) {
+        if (!logCondition.test(blockPos.toLong())) {
             return Collections.emptySet();
         }
 
         AtomicBoolean overrideHasLeaves = new AtomicBoolean(false);
-        ChopEvent.DetectTreeEvent detectEvent = new ChopEvent.DetectTreeEvent(world, null, blockPos, world.getBlockState(blockPos), inHasLeaves, overrideHasLeaves);
+        ChopEvent.DetectTreeEvent detectEvent = new ChopEvent.DetectTreeEvent(world, null, blockPos, reader.getBlockState(blockPos), inHasLeaves, overrideHasLeaves);
         boolean valueToOverrideHasLeaves = inHasLeaves.get();
 
         boolean canceled = MinecraftForge.EVENT_BUS.post(detectEvent);
@@ -198,63 +464,197 @@ public class ChopUtil {
             return Collections.emptySet();
         }
 
-        int maxNumTreeBlocks = ConfigHandler.COMMON.maxNumTreeBlocks.get();
-
         AtomicBoolean trueHasLeaves = new AtomicBoolean(false);
-        Set<BlockPos> supportedBlocks = getConnectedBlocks(
-                Collections.singletonList(blockPos),
-                somePos -> BlockNeighbors.HORIZONTAL_AND_ABOVE.asStream(somePos)
-                        .peek(pos -> trueHasLeaves.compareAndSet(false, isBlockLeaves(world, pos)))
-                        .filter(logCondition),
-                maxNumTreeBlocks
-        );
+        Set<BlockPos> supportedBlocks = scanner.apply(trueHasLeaves);
+
+        inHasLeaves.set(overrideHasLeaves.get() ? valueToOverrideHasLeaves : trueHasLeaves.get());
+
+        return supportedBlocks;
+    }
+
+    /**
+     * Finds the logs connected to {@code blockPos} without posting any events, so it can be called off the main thread
+     * with a reader that allows it, such as a {@link SnapshotBlockStateReader}.
+     * @param hasLeaves set to true if leaves are found next to any of the logs
+     */
+    public static Set<BlockPos> scanTreeBlocks(IBlockStateReader reader, BlockPos blockPos, LongPredicate logCondition, AtomicBoolean hasLeaves) {
+        return scanTreeBlocks(reader, blockPos, logCondition, hasLeaves, null);
+    }
+
+    /**
+     * @param scannedLeaves if not {@code null}, filled with the leaves found next to the logs, so that
+     * {@link #getTreeLeaves(IBlockStateReader, Collection, ScannedLeaves)} can carry on from them
+     */
+    public static Set<BlockPos> scanTreeBlocks(IBlockStateReader reader, BlockPos blockPos, LongPredicate logCondition, AtomicBoolean hasLeaves, @Nullable ScannedLeaves scannedLeaves) {
+        int maxNumTreeBlocks = ConfigHandler.COMMON.maxNumTreeBlocks.get();
+        Set<BlockPos> supportedBlocks = scanTreeBlocks(reader, blockPos, logCondition, hasLeaves, scannedLeaves, maxNumTreeBlocks);
 
         if (supportedBlocks.size() >= maxNumTreeBlocks) {
             TreeChopMod.LOGGER.warn(String.format("Max tree size reached: %d >= %d blocks (not including leaves)", supportedBlocks.size(), maxNumTreeBlocks));
+            ChopStats.numTreesAtMaxSize.increment();
         }
 
-        inHasLeaves.set(overrideHasLeaves.get() ? valueToOverrideHasLeaves : trueHasLeaves.get());
+        return supportedBlocks;
+    }
+
+    private static Set<BlockPos> scanTreeBlocks(IBlockStateReader reader, BlockPos blockPos, LongPredicate logCondition, AtomicBoolean hasLeaves, @Nullable ScannedLeaves scannedLeaves, int maxNumTreeBlocks) {
+        long startTime = System.nanoTime();
+
+        Set<BlockPos> supportedBlocks;
+        try (FloodFill fill = FloodFill.acquire()) {
+            searchTreeBlocks(fill, reader, blockPos, logCondition, hasLeaves, scannedLeaves, maxNumTreeBlocks, () -> false);
+            supportedBlocks = fill.getVisitedBlocks();
+        }
+
+        if (supportedBlocks.size() >= maxNumTreeBlocks && scannedLeaves != null) {
+            scannedLeaves.clear(); // Some logs were never expanded
+        }
+
+        ChopStats.numTreeBlocksScanned.add(supportedBlocks.size());
+        ChopStats.treeSizes.record(supportedBlocks.size());
+        ChopStats.treeScanNanos.record(System.nanoTime() - startTime);
 
         return supportedBlocks;
     }
 
-    private static ChopResult chopTree(World world, BlockPos target, Set<BlockPos> supportedBlocks, int numChops) {
+    /**
+     * Like {@link #scanTreeBlocks}, but stops as soon as {@link #isPartOfATree(int, boolean, boolean)} is known to be
+     * true: when leaves are found, or when a second log is found and {@code mustHaveLeaves} is false. Only the logs found
+     * before stopping are returned.
+     */
+    public static Set<BlockPos> probeTreeBlocks(IBlockStateReader reader, BlockPos blockPos, LongPredicate logCondition, boolean mustHaveLeaves, AtomicBoolean hasLeaves) {
+        try (FloodFill fill = FloodFill.acquire()) {
+            searchTreeBlocks(
+                    fill,
+                    reader,
+                    blockPos,
+                    logCondition,
+                    hasLeaves,
+                    null,
+                    ConfigHandler.COMMON.maxNumTreeBlocks.get(),
+                    () -> hasLeaves.get() || (!mustHaveLeaves && fill.size() >= 2)
+            );
+            return fill.getVisitedBlocks();
+        }
+    }
+
+    private static void searchTreeBlocks(FloodFill fill, IBlockStateReader reader, BlockPos blockPos, LongPredicate logCondition, AtomicBoolean hasLeaves, @Nullable ScannedLeaves scannedLeaves, int maxNumTreeBlocks, BooleanSupplier stopCondition) {
+        fill.add(blockPos);
+        if (scannedLeaves != null) {
+            scanLog(reader, blockPos.toLong(), scannedLeaves);
+        }
+
+        fill.search(
+                pos -> BlockNeighbors.HORIZONTAL_AND_ABOVE,
+                (pos, depth) -> {
+                    if (scannedLeaves != null) {
+                        if (isBlockLeaves(reader, pos)) {
+                            hasLeaves.set(true);
+                            if (isAdjacent(pos, fill.getCurrentPos())) {
+                                scannedLeaves.addAdjacentLeaves(pos);
+                            }
+                        }
+                    } else if (!hasLeaves.get() && isBlockLeaves(reader, pos)) {
+                        hasLeaves.set(true);
+                    }
+
+                    if (logCondition.test(pos)) {
+                        if (scannedLeaves != null) {
+                            scanLog(reader, pos, scannedLeaves);
+                        }
+                        return true;
+                    } else {
+                        return false;
+                    }
+                },
+                maxNumTreeBlocks,
+                stopCondition
+        );
+    }
+
+    /**
+     * Records a log found by {@link #searchTreeBlocks}. The search only looks sideways and up, so the block below is
+     * checked here; the rest of the log's sides are checked when the search expands from it.
+     */
+    private static void scanLog(IBlockStateReader reader, long pos, ScannedLeaves scannedLeaves) {
+        scannedLeaves.addLog(pos);
+        long below = BlockPos.offset(pos, Direction.DOWN);
+        if (isBlockLeaves(reader, below)) {
+            scannedLeaves.addAdjacentLeaves(below);
+        }
+    }
+
+    private static boolean isNextToAny(LongSet positions, long pos) {
+        for (int i = 0, n = BlockNeighbors.ADJACENTS.size(); i < n; ++i) {
+            if (positions.contains(BlockNeighbors.ADJACENTS.offset(pos, i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAdjacent(long a, long b) {
+        return Math.abs(BlockPos.unpackX(a) - BlockPos.unpackX(b))
+                + Math.abs(BlockPos.unpackY(a) - BlockPos.unpackY(b))
+                + Math.abs(BlockPos.unpackZ(a) - BlockPos.unpackZ(b)) == 1;
+    }
+
+    // Package-private for benchmarks
+    static ChopResult chopTree(World world, IBlockStateReader reader, BlockPos target, Set<BlockPos> supportedBlocks, int numChops) {
+        return chopTree(world, reader, target, supportedBlocks, numChops, null);
+    }
+
+    /**
+     * @param nearbyChoppedBlocks if not {@code null}, the result of {@link #getNearbyChoppedBlocks} for {@code target}
+     */
+    private static ChopResult chopTree(World world, IBlockStateReader reader, BlockPos target, Set<BlockPos> supportedBlocks, int numChops, @Nullable Long2ByteMap nearbyChoppedBlocks) {
+        long startTime = System.nanoTime();
+        ChopResult chopResult = chopTreeUntimed(world, reader, target, supportedBlocks, numChops, nearbyChoppedBlocks);
+        ChopStats.chopTreeNanos.record(System.nanoTime() - startTime);
+        return chopResult;
+    }
+
+    private static ChopResult chopTreeUntimed(World world, IBlockStateReader reader, BlockPos target, Set<BlockPos> supportedBlocks, int numChops, @Nullable Long2ByteMap nearbyChoppedBlocks) {
         if (supportedBlocks.isEmpty()) {
             return ChopResult.IGNORED;
         }
 
-        BlockState blockState = world.getBlockState(target);
+        BlockState blockState = reader.getBlockState(target);
         int currentNumChops = getNumChops(blockState);
         int numChopsToFell = numChopsToFell(supportedBlocks.size());
 
         if (currentNumChops + numChops < numChopsToFell) {
-            Set<BlockPos> nearbyChoppableBlocks;
-            nearbyChoppableBlocks = ChopUtil.getConnectedBlocks(
-                    Collections.singletonList(target),
-                    pos -> BlockNeighbors.ADJACENTS_AND_DIAGONALS.asStream(pos)
-                            .filter(checkPos -> Math.abs(checkPos.getY() - target.getY()) < 4 && isBlockChoppable(world, checkPos)),
-                    64
-            );
+            if (nearbyChoppedBlocks == null) {
+                nearbyChoppedBlocks = getNearbyChoppedBlocks(world, reader, target);
+            }
 
-            int totalNumChops = getNumChops(world, nearbyChoppableBlocks) + numChops;
+            int totalNumChops = getNumChops(nearbyChoppedBlocks) + numChops;
 
             if (totalNumChops >= numChopsToFell) {
-                List<BlockPos> choppedLogsSortedByY = nearbyChoppableBlocks.stream()
-                        .filter(pos1 -> world.getBlockState(pos1).getBlock() instanceof IChoppableBlock)
-                        .sorted(Comparator.comparingInt(Vector3i::getY))
-                        .collect(Collectors.toList());
-
-                // Consume nearby chopped blocks that contributed even if they're at a lower Y, but prefer higher ones
-                for (BlockPos pos : choppedLogsSortedByY) {
-                    int chops = getNumChops(world, pos);
-                    supportedBlocks.add(pos);
-                    if (chops > numChopsToFell) {
-                        break;
+                // Consume nearby chopped blocks that contributed from the bottom up, stopping at the lowest one that had
+                // more chops than were needed on its own. Felling puts them in order with the rest of the logs.
+                int stopY = Integer.MAX_VALUE;
+                long stopPos = 0;
+                for (Long2ByteMap.Entry entry : nearbyChoppedBlocks.long2ByteEntrySet()) {
+                    int y = BlockPos.unpackY(entry.getLongKey());
+                    if (entry.getByteValue() > numChopsToFell && y < stopY) {
+                        stopY = y;
+                        stopPos = entry.getLongKey();
+                    }
+                }
+
+                for (LongIterator it = nearbyChoppedBlocks.keySet().iterator(); it.hasNext(); ) {
+                    long pos = it.nextLong();
+                    if (BlockPos.unpackY(pos) < stopY || pos == stopPos) {
+                        supportedBlocks.add(BlockPos.fromLong(pos));
                     }
                 }
             } else {
-                nearbyChoppableBlocks.remove(target);
-                return gatherChops(world, target, numChops, nearbyChoppableBlocks);
+                return gatherChops(world, reader, target, numChops, () -> {
+                    Set<BlockPos> nearbyChoppableBlocks = getNearbyChoppableBlocks(reader, target);
+                    nearbyChoppableBlocks.remove(target);
+                    return nearbyChoppableBlocks;
+                });
             }
         }
 
@@ -262,59 +662,141 @@ public class ChopUtil {
         return new ChopResult(world, Collections.singletonList(target), supportedBlocks);
     }
 
+    /**
+     * @return the blocks that chops on {@code target} can spill over onto, including {@code target}
+     */
+    private static Set<BlockPos> getNearbyChoppableBlocks(IBlockStateReader reader, BlockPos target) {
+        try (FloodFill fill = FloodFill.acquire()) {
+            fill.add(target);
+            fill.search(
+                    pos -> BlockNeighbors.ADJACENTS_AND_DIAGONALS,
+                    (pos, depth) -> Math.abs(BlockPos.unpackY(pos) - target.getY()) < 4 && isBlockChoppable(reader, pos),
+                    MAX_NUM_NEARBY_CHOPPABLE_BLOCKS
+            );
+            return fill.getVisitedBlocks();
+        }
+    }
+
+    /**
+     * @return the positions and numbers of chops of the chopped blocks that chops on {@code target} can spill over from,
+     * including {@code target} if it is chopped. On the server, chopped blocks are looked up in the
+     * {@link ChunkChopIndex} instead of the world, and only chopped blocks are followed from {@code target}, so the
+     * search is as big as the group of chopped blocks and no bigger.
+     */
+    private static Long2ByteMap getNearbyChoppedBlocks(World world, IBlockStateReader reader, BlockPos target) {
+        Long2ByteMap choppedBlocks = new Long2ByteOpenHashMap();
+        int targetNumChops = getNumChops(reader.getBlockState(target));
+        if (targetNumChops > 0) {
+            choppedBlocks.put(target.toLong(), (byte) targetNumChops);
+        }
+
+        if (world instanceof ServerWorld && areAllChoppableBlocksIndexed()) {
+            try (FloodFill fill = FloodFill.acquire()) {
+                fill.add(target);
+                fill.search(
+                        pos -> BlockNeighbors.ADJACENTS_AND_DIAGONALS,
+                        (pos, depth) -> {
+                            if (Math.abs(BlockPos.unpackY(pos) - target.getY()) >= 4) {
+                                return false;
+                            }
+
+                            int chops = ChunkChopIndex.getNumChops(world, pos);
+                            if (chops > 0) {
+                                choppedBlocks.put(pos, (byte) chops);
+                                return true;
+                            } else {
+                                return false;
+                            }
+                        },
+                        MAX_NUM_NEARBY_CHOPPABLE_BLOCKS
+                );
+            }
+        } else {
+            for (BlockPos pos : getNearbyChoppableBlocks(reader, target)) {
+                int chops = getNumChops(reader.getBlockState(pos));
+                if (chops > 0) {
+                    choppedBlocks.put(pos.toLong(), (byte) chops);
+                }
+            }
+        }
+
+        return choppedBlocks;
+    }
+
+    /**
+     * The {@link ChunkChopIndex} only knows about {@link ChoppedLogBlock}s, so it can't be used to find nearby chops if
+     * other mods add their own {@link IChoppableBlock}s.
+     */
+    private static boolean areAllChoppableBlocksIndexed() {
+        if (allChoppableBlocksIndexed == null) {
+            allChoppableBlocksIndexed = ForgeRegistries.BLOCKS.getValues().stream()
+                    .noneMatch(block -> block instanceof IChoppableBlock && !(block instanceof ChoppedLogBlock));
+        }
+        return allChoppableBlocksIndexed;
+    }
+
     /**
      * Adds chops to the targeted block without destroying it. Overflow chops spill to nearby blocks.
-     * @param nearbyChoppableBlocks must not include {@code target}
+     * @param nearbyChoppableBlocksSupplier must not include {@code target}; only called if chops spill over
      */
-    private static ChopResult gatherChops(World world, BlockPos target, int numChops, Set<BlockPos> nearbyChoppableBlocks) {
+    private static ChopResult gatherChops(World world, IBlockStateReader reader, BlockPos target, int numChops, Supplier<Set<BlockPos>> nearbyChoppableBlocksSupplier) {
         List<TreeBlock> choppedBlocks = new LinkedList<>();
-        int numChopsLeft = gatherChopAndGetNumChopsRemaining(world, target, numChops, choppedBlocks);
 
-        if (numChopsLeft > 0) {
-            List<BlockPos> sortedChoppableBlocks = nearbyChoppableBlocks.stream()
-                    .filter(blockPos1 -> {
-                        BlockState blockState1 = world.getBlockState(blockPos1);
-                        Block block1 = blockState1.getBlock();
-                        if (block1 instanceof IChoppableBlock) {
-                            return getNumChops(blockState1) < getMaxNumChops(world, blockPos1, blockState1);
-                        } else {
-                            return blockPos1.getY() >= target.getY();
-                        }
-                    })
-                    .sorted(Comparator.comparingInt(a -> chopDistance(target, a)))
-                    .collect(Collectors.toList());
-
-            if (sortedChoppableBlocks.size() > 0) {
-                int nextChoiceDistance = chopDistance(target, sortedChoppableBlocks.get(0));
-                int candidateStartIndex = 0;
-                for (int i = 0, n = sortedChoppableBlocks.size(); i <= n; ++i) {
-                    if (i == n || chopDistance(target, sortedChoppableBlocks.get(i)) > nextChoiceDistance) {
-                        List<BlockPos> candidates = sortedChoppableBlocks.subList(candidateStartIndex, i);
-                        Collections.shuffle(candidates);
-
-                        for (BlockPos nextTarget : candidates) {
-                            numChopsLeft = gatherChopAndGetNumChopsRemaining(world, nextTarget, numChopsLeft, choppedBlocks);
-                            if (numChopsLeft <= 0) {
-                                break;
-                            }
-                        }
+        // Chops that spill over go to blocks next to each other, whose neighborhoods mostly overlap
+        Function<BlockPos, ChoppedLogShape> placementShapes = ChoppedLogBlock.getPlacementShapes(reader);
+        int numChopsLeft = gatherChopAndGetNumChopsRemaining(world, reader, target, numChops, choppedBlocks, placementShapes);
 
-                        if (numChopsLeft <= 0) {
-                            break;
-                        }
-                        candidateStartIndex = i;
+        if (numChopsLeft > 0) {
+            Random random = ThreadLocalRandom.current();
+            for (List<BlockPos> candidates : bucketByChopDistance(target, nearbyChoppableBlocksSupplier.get())) {
+                // Try equally distant candidates in random order, but only until the chops run out
+                for (int numCandidatesLeft = candidates.size(); numCandidatesLeft > 0 && numChopsLeft > 0; --numCandidatesLeft) {
+                    int index = random.nextInt(numCandidatesLeft);
+                    BlockPos nextTarget = candidates.get(index);
+                    candidates.set(index, candidates.get(numCandidatesLeft - 1));
+
+                    if (canSpillChopsOnto(reader, target, nextTarget)) {
+                        numChopsLeft = gatherChopAndGetNumChopsRemaining(world, reader, nextTarget, numChopsLeft, choppedBlocks, placementShapes);
                     }
                 }
 
+                if (numChopsLeft <= 0) {
+                    break;
+                }
             }
         }
 
         return new ChopResult(choppedBlocks);
     }
 
-    private static int gatherChopAndGetNumChopsRemaining(World world, BlockPos target, int numChops, List<TreeBlock> choppedBlocks) {
-        BlockState blockStateBeforeChopping = world.getBlockState(target);
-        BlockState blockStateAfterChopping = getBlockStateAfterChops(world, target, numChops, false);
+    /**
+     * Chop distances are small, so sort by putting blocks in a bucket for each distance.
+     * @return lists of {@code blocks} with the same chop distance from {@code target}, nearest first
+     */
+    private static List<List<BlockPos>> bucketByChopDistance(BlockPos target, Collection<BlockPos> blocks) {
+        List<List<BlockPos>> buckets = new ArrayList<>();
+        for (BlockPos pos : blocks) {
+            int distance = chopDistance(target, pos);
+            while (buckets.size() <= distance) {
+                buckets.add(new ArrayList<>());
+            }
+            buckets.get(distance).add(pos);
+        }
+        return buckets;
+    }
+
+    private static boolean canSpillChopsOnto(IBlockStateReader reader, BlockPos target, BlockPos pos) {
+        BlockState blockState = reader.getBlockState(pos);
+        if (blockState.getBlock() instanceof IChoppableBlock) {
+            return getNumChops(blockState) < getMaxNumChops(reader, pos, blockState);
+        } else {
+            return pos.getY() >= target.getY();
+        }
+    }
+
+    private static int gatherChopAndGetNumChopsRemaining(World world, IBlockStateReader reader, BlockPos target, int numChops, List<TreeBlock> choppedBlocks, Function<BlockPos, ChoppedLogShape> placementShape) {
+        BlockState blockStateBeforeChopping = reader.getBlockState(target);
+        BlockState blockStateAfterChopping = getBlockStateAfterChops(reader, target, numChops, false, placementShape);
 
         if (blockStateBeforeChopping != blockStateAfterChopping) {
             choppedBlocks.add(new TreeBlock(world, target, blockStateAfterChopping, true));
@@ -324,15 +806,26 @@ public class ChopUtil {
     }
 
     public static BlockState getBlockStateAfterChops(World world, BlockPos blockPos, int numChops, boolean destructive) {
-        BlockState blockState = world.getBlockState(blockPos);
+        return getBlockStateAfterChops(new CachedBlockStateReader(world), blockPos, numChops, destructive);
+    }
+
+    public static BlockState getBlockStateAfterChops(IBlockStateReader reader, BlockPos blockPos, int numChops, boolean destructive) {
+        return getBlockStateAfterChops(reader, blockPos, numChops, destructive, pos -> ChoppedLogBlock.getPlacementShape(reader, pos));
+    }
+
+    /**
+     * @param placementShape gives the shape of a newly chopped log at the given position
+     */
+    private static BlockState getBlockStateAfterChops(IBlockStateReader reader, BlockPos blockPos, int numChops, boolean destructive, Function<BlockPos, ChoppedLogShape> placementShape) {
+        BlockState blockState = reader.getBlockState(blockPos);
         Block block = blockState.getBlock();
         if (block instanceof IChoppableBlock) {
             return getBlockStateAfterChops((IChoppableBlock) block, blockState, numChops, destructive);
         } else {
-            if (isBlockChoppable(world, blockPos, blockState)) {
+            if (isBlockChoppable(reader, blockPos.toLong(), blockState)) {
                 IChoppableBlock choppedBlock = getChoppedBlock(blockState);
                 if (choppedBlock instanceof Block) {
-                    ChoppedLogShape shape = ChoppedLogBlock.getPlacementShape(world, blockPos);
+                    ChoppedLogShape shape = placementShape.apply(blockPos);
                     BlockState defaultChoppedState = ((Block) choppedBlock).getDefaultState().with(BlockStateProperties.CHOPPED_LOG_SHAPE, shape);
                     return getBlockStateAfterChops(
                             choppedBlock,
@@ -364,11 +857,15 @@ public class ChopUtil {
     }
 
     public static int getMaxNumChops(World world, BlockPos blockPos, BlockState blockState) {
+        return getMaxNumChops(new CachedBlockStateReader(world), blockPos, blockState);
+    }
+
+    public static int getMaxNumChops(IBlockStateReader reader, BlockPos blockPos, BlockState blockState) {
         Block block = blockState.getBlock();
         if (block instanceof IChoppableBlock) {
             return ((IChoppableBlock) block).getMaxNumChops();
         } else {
-            if (isBlockChoppable(world, blockPos, world.getBlockState(blockPos))) {
+            if (isBlockChoppable(reader, blockPos.toLong())) {
                 IChoppableBlock choppedBlock = getChoppedBlock(blockState);
                 return (choppedBlock != null) ? choppedBlock.getMaxNumChops() : 0;
             } else {
@@ -395,23 +892,32 @@ public class ChopUtil {
     }
 
     public static int getNumChops(World world, Set<BlockPos> positions) {
-        return positions.stream()
-                .map(world::getBlockState)
-                .map(blockState1 -> blockState1.getBlock() instanceof IChoppableBlock
-                        ? ((IChoppableBlock) blockState1.getBlock()).getNumChops(blockState1)
-                        : 0
-                )
-                .reduce(Integer::sum)
-                .orElse(0);
+        return getNumChops(new CachedBlockStateReader(world), positions);
     }
 
-    private static ChopResult tryToChopWithoutFelling(World world, BlockPos blockPos, int numChops) {
-        return (isBlockChoppable(world, blockPos))
+    public static int getNumChops(IBlockStateReader reader, Set<BlockPos> positions) {
+        int numChops = 0;
+        for (BlockPos pos : positions) {
+            numChops += getNumChops(reader.getBlockState(pos));
+        }
+        return numChops;
+    }
+
+    private static int getNumChops(Long2ByteMap choppedBlocks) {
+        int numChops = 0;
+        for (ByteIterator it = choppedBlocks.values().iterator(); it.hasNext(); ) {
+            numChops += it.nextByte();
+        }
+        return numChops;
+    }
+
+    private static ChopResult tryToChopWithoutFelling(World world, IBlockStateReader reader, BlockPos blockPos, int numChops) {
+        return (isBlockChoppable(reader, blockPos.toLong()))
                 ? new ChopResult(
                         Collections.singletonList(new TreeBlock(
                                 world,
                                 blockPos,
-                                getBlockStateAfterChops(world, blockPos, numChops, true),
+                                getBlockStateAfterChops(reader, blockPos, numChops, true),
                                 true
                         )),
                         false
@@ -475,24 +981,86 @@ public class ChopUtil {
         }
     }
 
+    /**
+     * Drops {@code amount} experience as a single orb, unlike {@link Block#dropXpOnBlockBreak}, which splits it up.
+     */
     public static void dropExperience(World world, BlockPos blockPos, int amount) {
-        if (world instanceof ServerWorld) {
-            Blocks.AIR.dropXpOnBlockBreak((ServerWorld) world, blockPos, amount);
+        if (world instanceof ServerWorld && amount > 0 && world.getGameRules().getBoolean(GameRules.DO_TILE_DROPS) && !world.restoringBlockSnapshots) {
+            world.addEntity(new ExperienceOrbEntity(world, blockPos.getX() + 0.5, blockPos.getY() + 0.5, blockPos.getZ() + 0.5, amount));
         }
     }
 
     public static boolean isPartOfATree(World world, BlockPos pos, boolean mustHaveLeaves) {
         AtomicBoolean hasLeaves = new AtomicBoolean(false);
-        Set<BlockPos> treeBlocks = getTreeBlocks(world, pos, blockPos -> isBlockALog(world, blockPos), hasLeaves);
+        Set<BlockPos> treeBlocks = probeTreeBlocks(world, pos, mustHaveLeaves, hasLeaves);
+        return isPartOfATree(treeBlocks.size(), hasLeaves.get(), mustHaveLeaves);
+    }
 
-        if (treeBlocks.isEmpty()) {
+    /**
+     * @param numTreeBlocks the number of blocks found by {@link #getTreeBlocks(World, BlockPos, AtomicBoolean)}
+     */
+    public static boolean isPartOfATree(int numTreeBlocks, boolean hasLeaves, boolean mustHaveLeaves) {
+        if (numTreeBlocks == 0) {
             return false;
         } else {
             if (mustHaveLeaves) {
-                return hasLeaves.get();
+                return hasLeaves;
             } else {
-                return treeBlocks.size() >= (hasLeaves.get() ? 1 : 2);
+                return numTreeBlocks >= (hasLeaves ? 1 : 2);
             }
         }
     }
+
+    /**
+     * Finds the logs connected to {@code pos}, posting a {@link ChopEvent.DetectTreeEvent}.
+     * @param hasLeaves set to whether the tree has leaves
+     */
+    public static Set<BlockPos> getTreeBlocks(World world, BlockPos pos, AtomicBoolean hasLeaves) {
+        CachedBlockStateReader reader = new CachedBlockStateReader(world);
+        return getTreeBlocks(world, reader, pos, logPos -> isBlockALog(reader, logPos), hasLeaves);
+    }
+
+    /**
+     * Like {@link #getTreeBlocks(World, BlockPos, AtomicBoolean)}, but only finds enough logs to tell whether they are
+     * part of a tree; see {@link #probeTreeBlocks(IBlockStateReader, BlockPos, LongPredicate, boolean, AtomicBoolean)}.
+     */
+    public static Set<BlockPos> probeTreeBlocks(World world, BlockPos pos, boolean mustHaveLeaves, AtomicBoolean hasLeaves) {
+        CachedBlockStateReader reader = new CachedBlockStateReader(world);
+        LongPredicate logCondition = logPos -> isBlockALog(reader, logPos);
+        return getTreeBlocks(
+                world,
+                reader,
+                pos,
+                logCondition,
+                hasLeaves,
+                trueHasLeaves -> probeTreeBlocks(reader, pos, logCondition, mustHaveLeaves, trueHasLeaves)
+        );
+    }
+
+    /**
+     * Finds every tree with logs inside {@code region}; see {@link RegionTrees}. Unlike
+     * {@link #getTreeBlocks(World, BlockPos, AtomicBoolean)}, no events are posted.
+     */
+    public static List<RegionTrees.Tree> getTreesInRegion(World world, MutableBoundingBox region, boolean mustHaveLeaves) {
+        return RegionTrees.find(new SectionBlockStateReader(world), region, mustHaveLeaves);
+    }
+
+    /**
+     * Like {@link #getTreeBlocks(World, BlockPos, AtomicBoolean)}, but uses the results of a {@link #scanTreeBlocks}
+     * that was already done, for example off the main thread.
+     */
+    public static Set<BlockPos> getTreeBlocks(World world, BlockPos pos, Set<BlockPos> scannedTreeBlocks, boolean scannedHasLeaves, AtomicBoolean hasLeaves) {
+        CachedBlockStateReader reader = new CachedBlockStateReader(world);
+        return getTreeBlocks(
+                world,
+                reader,
+                pos,
+                logPos -> isBlockALog(reader, logPos),
+                hasLeaves,
+                trueHasLeaves -> {
+                    trueHasLeaves.set(scannedHasLeaves);
+                    return new HashSet<>(scannedTreeBlocks);
+                }
+        );
+    }
 }
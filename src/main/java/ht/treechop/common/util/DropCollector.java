@@ -0,0 +1,101 @@
+package ht.treechop.common.util;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.item.ItemEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the items dropped while harvesting blocks so that they can be spawned as few item entities as possible.
+ * Items are collected by canceling {@link net.minecraftforge.event.entity.EntityJoinWorldEvent} for item entities
+ * while a {@link Capture} is open. Only use on the server thread.
+ * <pre>{@code
+ * try (DropCollector.Capture capture = collector.capture()) {
+ *     block.harvestBlock(...);
+ * }
+ * ...
+ * collector.spawnDrops(pos);
+ * }</pre>
+ */
+public class DropCollector {
+
+    private static DropCollector capturingCollector = null;
+
+    private final World world;
+    private final List<ItemStack> drops = new ArrayList<>();
+
+    public DropCollector(World world) {
+        this.world = world;
+    }
+
+    /**
+     * @return whether {@code entity} was collected, in which case it should not be added to the world
+     */
+    public static boolean collect(ItemEntity entity) {
+        DropCollector collector = capturingCollector;
+        if (collector != null && entity.getEntityWorld() == collector.world) {
+            collector.add(entity.getItem());
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public Capture capture() {
+        return new Capture(this);
+    }
+
+    // Package-private for tests
+    void add(ItemStack stack) {
+        for (ItemStack drop : drops) {
+            if (drop.getCount() < drop.getMaxStackSize()
+                    && ItemStack.areItemsEqual(drop, stack)
+                    && ItemStack.areItemStackTagsEqual(drop, stack)) {
+                int numToMove = Math.min(stack.getCount(), drop.getMaxStackSize() - drop.getCount());
+                drop.grow(numToMove);
+                stack.shrink(numToMove);
+                if (stack.isEmpty()) {
+                    return;
+                }
+            }
+        }
+
+        if (!stack.isEmpty()) {
+            drops.add(stack.copy());
+        }
+    }
+
+    // Package-private for tests
+    List<ItemStack> getDrops() {
+        return drops;
+    }
+
+    /**
+     * Spawns everything collected so far at {@code pos}.
+     */
+    public void spawnDrops(BlockPos pos) {
+        for (ItemStack drop : drops) {
+            Block.spawnAsEntity(world, pos, drop);
+        }
+        drops.clear();
+    }
+
+    public static class Capture implements AutoCloseable {
+        private final DropCollector previousCollector;
+
+        private Capture(DropCollector collector) {
+            previousCollector = capturingCollector;
+            capturingCollector = collector;
+        }
+
+        @Override
+        public void close() {
+            capturingCollector = previousCollector;
+        }
+    }
+
+}
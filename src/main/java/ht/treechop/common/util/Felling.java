@@ -0,0 +1,257 @@
+package ht.treechop.common.util;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.enchantment.EnchantmentHelper;
+import net.minecraft.enchantment.Enchantments;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.common.util.FakePlayerFactory;
+import net.minecraftforge.event.ForgeEventFactory;
+import net.minecraftforge.event.world.BlockEvent;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Harvests and replaces the blocks of a chop result, either all at once or a few blocks at a time. The targeted block
+ * goes first, then the rest from the top down, in the order of the logs' {@link TreeModel}. Blocks that have changed
+ * since the felling was created are skipped.
+ * Item drops are merged and, with experience, dropped at the targeted block once the felling is done.
+ * <p>
+ * Blocks are replaced without updating their neighbors. Instead, {@link #notifyNeighbors} updates only the blocks
+ * around the replaced ones, so that the blocks of a tree do not update each other as it is felled.
+ */
+public class Felling {
+
+    private static final int REPLACE_FLAGS = 2 | 16; // Send to clients, but skip neighbor and shape updates
+
+    private final World world;
+    private final BlockPos targetPos;
+    private final PlayerEntity agent;
+    private final PlayerEntity fakePlayer;
+    private final ItemStack tool;
+    private final int fortune;
+    private final int silkTouch;
+    private final boolean harvest;
+    private final List<TreeBlock> blocks;
+    private final BlockState[] originalStates;
+    private final Set<TreeBlock> effectBlocks = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final LongOpenHashSet replacedPositions = new LongOpenHashSet();
+    private final IntArrayList unnotifiedIndices = new IntArrayList();
+    private final DropCollector dropCollector;
+
+    private int nextIndex = 0;
+    private int xp = 0;
+
+    /**
+     * @param harvest whether to harvest blocks for drops and experience
+     * @param model the model of {@code logs}
+     */
+    public Felling(World world, BlockPos targetPos, PlayerEntity agent, ItemStack tool, boolean harvest, TreeModel model, List<TreeBlock> logs, List<TreeBlock> leaves) {
+        this.world = world;
+        this.targetPos = targetPos;
+        this.agent = agent;
+        this.fakePlayer = (world instanceof ServerWorld)
+                ? FakePlayerFactory.getMinecraft((ServerWorld) world)
+                : agent;
+        this.tool = tool;
+        this.fortune = EnchantmentHelper.getEnchantmentLevel(Enchantments.FORTUNE, tool);
+        this.silkTouch = EnchantmentHelper.getEnchantmentLevel(Enchantments.SILK_TOUCH, tool);
+        this.harvest = harvest;
+        this.dropCollector = new DropCollector(world);
+
+        Long2ObjectOpenHashMap<TreeBlock> logsByPos = new Long2ObjectOpenHashMap<>(logs.size());
+        for (TreeBlock log : logs) {
+            logsByPos.put(log.getPos().toLong(), log);
+        }
+
+        List<TreeBlock> leavesTopDown = new ArrayList<>(leaves);
+        leavesTopDown.sort(Comparator.comparingInt(treeBlock -> -treeBlock.getPos().getY()));
+
+        chooseEffectBlocks(model, logsByPos, leavesTopDown);
+
+        blocks = new ArrayList<>(logsByPos.size() + leavesTopDown.size());
+        long target = targetPos.toLong();
+        TreeBlock targetBlock = logsByPos.get(target);
+        if (targetBlock != null) {
+            blocks.add(targetBlock);
+        }
+
+        // Merge the logs and leaves, taking logs first on each layer
+        long[] logsTopDown = model.getLogsTopDown();
+        int numLeaves = leavesTopDown.size();
+        for (int i = 0, j = 0; i < logsTopDown.length || j < numLeaves; ) {
+            if (j == numLeaves || (i < logsTopDown.length && BlockPos.unpackY(logsTopDown[i]) >= leavesTopDown.get(j).getPos().getY())) {
+                long pos = logsTopDown[i++];
+                if (pos != target) {
+                    blocks.add(logsByPos.get(pos));
+                }
+            } else {
+                blocks.add(leavesTopDown.get(j++));
+            }
+        }
+
+        originalStates = new BlockState[blocks.size()];
+        for (int i = 0, n = blocks.size(); i < n; ++i) {
+            originalStates[i] = world.getBlockState(blocks.get(i).getPos());
+        }
+    }
+
+    /**
+     * Shows effects at the top of each trunk and branch first, so that the shape of the tree shows even with few
+     * effects, then at logs and leaves spread evenly from the top down.
+     */
+    private void chooseEffectBlocks(TreeModel model, Long2ObjectMap<TreeBlock> logsByPos, List<TreeBlock> leavesTopDown) {
+        int numLogsAndLeaves = logsByPos.size() + leavesTopDown.size();
+        int numEffects = Math.min((int) Math.ceil(Math.sqrt(numLogsAndLeaves)), ChopResult.MAX_NUM_FELLING_EFFECTS) - 1;
+        int numLeavesEffects = Math.max(0, (int) Math.ceil(numEffects * ((double) leavesTopDown.size() / (double) numLogsAndLeaves)));
+        int numLogsEffects = Math.max(0, numEffects - numLeavesEffects);
+
+        long[] base = model.getBase();
+        int[] trunkTops = model.getTrunkTops();
+        for (int i = 0; i < base.length && effectBlocks.size() < numLogsEffects; ++i) {
+            addEffectBlock(logsByPos.get(BlockPos.pack(BlockPos.unpackX(base[i]), trunkTops[i], BlockPos.unpackZ(base[i]))));
+        }
+
+        long[] branchLogs = model.getBranchLogs();
+        for (int i = 0, n = model.getNumBranches(); i < n && effectBlocks.size() < numLogsEffects; ++i) {
+            addEffectBlock(logsByPos.get(branchLogs[model.getBranchStart(i)]));
+        }
+
+        long[] logsTopDown = model.getLogsTopDown();
+        int numLogsLeft = numLogsEffects - effectBlocks.size();
+        for (int i = 0; i < numLogsLeft; ++i) {
+            addEffectBlock(logsByPos.get(logsTopDown[(int) ((long) i * logsTopDown.length / numLogsLeft)]));
+        }
+
+        for (int i = 0; i < numLeavesEffects; ++i) {
+            addEffectBlock(leavesTopDown.get((int) ((long) i * leavesTopDown.size() / numLeavesEffects)));
+        }
+    }
+
+    private void addEffectBlock(@Nullable TreeBlock treeBlock) {
+        if (treeBlock != null) {
+            effectBlocks.add(treeBlock);
+        }
+    }
+
+    public int size() {
+        return blocks.size();
+    }
+
+    public boolean isDone() {
+        return nextIndex >= blocks.size();
+    }
+
+    public void applyAll() {
+        while (!isDone()) {
+            applyNext();
+        }
+    }
+
+    /**
+     * Replaces the next block. Neighbors are not updated until {@link #notifyNeighbors} is called, or until the last
+     * block is replaced.
+     */
+    public void applyNext() {
+        if (isDone()) {
+            return;
+        }
+
+        int index = nextIndex++;
+        TreeBlock treeBlock = blocks.get(index);
+        BlockState originalState = originalStates[index];
+
+        BlockPos pos = treeBlock.getPos();
+        BlockState blockState = world.getBlockState(pos);
+        if (blockState == originalState) {
+            if (harvest) {
+                harvestWorldBlock(treeBlock, blockState);
+            }
+
+            if (effectBlocks.contains(treeBlock)) {
+                world.playEvent(2001, pos, Block.getStateId(blockState));
+            }
+
+            if (world.setBlockState(pos, treeBlock.getState(), REPLACE_FLAGS)) {
+                replacedPositions.add(pos.toLong());
+                unnotifiedIndices.add(index);
+            }
+        }
+
+        if (isDone()) {
+            notifyNeighbors();
+            if (harvest) {
+                dropCollector.spawnDrops(targetPos);
+                ChopUtil.dropExperience(world, targetPos, xp);
+            }
+        }
+    }
+
+    /**
+     * Does the neighbor and shape updates that were skipped when replacing blocks, for neighbors that have not been
+     * replaced themselves. Like a normal block change, a {@link BlockEvent.NeighborNotifyEvent} is posted for each
+     * replaced block, and nearby comparators are updated.
+     */
+    public void notifyNeighbors() {
+        BlockPos.Mutable neighborPos = new BlockPos.Mutable();
+        for (int i = 0, n = unnotifiedIndices.size(); i < n; ++i) {
+            int index = unnotifiedIndices.getInt(i);
+            BlockPos pos = blocks.get(index).getPos();
+            BlockState newState = world.getBlockState(pos);
+            Block originalBlock = originalStates[index].getBlock();
+
+            EnumSet<Direction> notifiedSides = EnumSet.noneOf(Direction.class);
+            for (Direction direction : Direction.values()) {
+                neighborPos.setPos(pos).move(direction);
+                if (!replacedPositions.contains(neighborPos.toLong())) {
+                    BlockState neighborState = world.getBlockState(neighborPos);
+                    BlockState updatedNeighborState = neighborState.updatePostPlacement(direction.getOpposite(), newState, world, neighborPos, pos);
+                    Block.replaceBlock(neighborState, updatedNeighborState, world, neighborPos, 2);
+                    notifiedSides.add(direction);
+                }
+            }
+
+            if (!ForgeEventFactory.onNeighborNotify(world, pos, newState, notifiedSides, false).isCanceled()) {
+                for (Direction direction : notifiedSides) {
+                    world.neighborChanged(neighborPos.setPos(pos).move(direction), originalBlock, pos);
+                }
+            }
+
+            if (!world.isRemote()) {
+                world.updateComparatorOutputLevel(pos, newState.getBlock());
+            }
+        }
+
+        unnotifiedIndices.clear();
+    }
+
+    private void harvestWorldBlock(TreeBlock treeBlock, BlockState blockState) {
+        BlockPos pos = treeBlock.getPos();
+        try (DropCollector.Capture capture = dropCollector.capture()) {
+            if (treeBlock.wasChopped()) {
+                blockState.getBlock().harvestBlock(world, agent, pos, blockState, world.getTileEntity(pos), tool);
+                xp += blockState.getExpDrop(world, pos, fortune, silkTouch);
+            } else {
+                blockState.getBlock().harvestBlock(world, fakePlayer, pos, blockState, world.getTileEntity(pos), ItemStack.EMPTY);
+                xp += blockState.getExpDrop(world, pos, 0, 0);
+            }
+        }
+    }
+
+}
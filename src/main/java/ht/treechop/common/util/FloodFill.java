@@ -0,0 +1,207 @@
+package ht.treechop.common.util;
+
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Breadth-first search over block positions packed with {@link BlockPos#toLong()}. The visited set and frontier are
+ * primitive collections that are kept per thread and reused between searches, so a search does not allocate a
+ * {@link BlockPos} for every block it visits.
+ * <p>
+ * Use with try-with-resources:
+ * <pre>{@code
+ * try (FloodFill fill = FloodFill.acquire()) {
+ *     fill.add(start);
+ *     fill.search(neighborsSupplier, condition, maxNumBlocks);
+ *     ...
+ * }
+ * }</pre>
+ */
+public class FloodFill implements AutoCloseable {
+
+    private static final ThreadLocal<FloodFill> THREAD_FLOOD_FILL = ThreadLocal.withInitial(FloodFill::new);
+    private static final int MAX_RETAINED_CAPACITY = 16384;
+
+    private final LongOpenHashSet visited = new LongOpenHashSet();
+    private final LongArrayFIFOQueue frontier = new LongArrayFIFOQueue();
+    private final BlockPos.Mutable mutablePos = new BlockPos.Mutable();
+    private boolean inUse = false;
+    private long currentPos;
+    private int maxFrontierSize = 0;
+
+    @FunctionalInterface
+    public interface NeighborsSupplier {
+        BlockNeighbors getNeighbors(long pos);
+    }
+
+    @FunctionalInterface
+    public interface Condition {
+        /**
+         * @param depth the number of steps between {@code pos} and the nearest starting point
+         * @return whether {@code pos} should be visited and searched from
+         */
+        boolean test(long pos, int depth);
+    }
+
+    private FloodFill() {
+    }
+
+    /**
+     * @return a cleared flood fill owned by the calling thread; nested calls receive a new instance
+     */
+    public static FloodFill acquire() {
+        FloodFill fill = THREAD_FLOOD_FILL.get();
+        if (fill.inUse) {
+            fill = new FloodFill();
+        }
+
+        fill.inUse = true;
+        return fill;
+    }
+
+    @Override
+    public void close() {
+        if (visited.size() > MAX_RETAINED_CAPACITY) {
+            visited.clear();
+            visited.trim();
+        } else {
+            visited.clear();
+        }
+
+        // The frontier is empty after a search that ran to the end, so remember how big it got instead
+        if (maxFrontierSize > MAX_RETAINED_CAPACITY) {
+            frontier.clear();
+            frontier.trim();
+        } else {
+            frontier.clear();
+        }
+        maxFrontierSize = 0;
+
+        inUse = false;
+    }
+
+    public void add(long pos) {
+        if (visited.add(pos)) {
+            enqueue(pos);
+        }
+    }
+
+    public void add(BlockPos pos) {
+        add(pos.toLong());
+    }
+
+    /**
+     * Marks {@code pos} as visited without searching from it.
+     */
+    public void addVisited(long pos) {
+        visited.add(pos);
+    }
+
+    public void addAll(Collection<BlockPos> positions) {
+        for (BlockPos pos : positions) {
+            add(pos);
+        }
+    }
+
+    /**
+     * Visits blocks reachable from the starting points until no more blocks satisfy {@code condition} or
+     * {@code maxNumBlocks} blocks (including the starting points) have been visited.
+     * @return the depth of the deepest visited block
+     */
+    public int search(NeighborsSupplier neighborsSupplier, Condition condition, int maxNumBlocks) {
+        return search(neighborsSupplier, condition, maxNumBlocks, () -> false);
+    }
+
+    /**
+     * Like {@link #search(NeighborsSupplier, Condition, int)}, but also stops as soon as {@code stopCondition} is true.
+     * It is checked after each call to {@code condition}, so that a search can stop once it has found what it was
+     * looking for.
+     */
+    public int search(NeighborsSupplier neighborsSupplier, Condition condition, int maxNumBlocks, BooleanSupplier stopCondition) {
+        int depth = 0;
+        int numLeftAtDepth = frontier.size();
+
+        while (!frontier.isEmpty() && visited.size() < maxNumBlocks) {
+            long pos = frontier.dequeueLong();
+            currentPos = pos;
+            BlockNeighbors neighbors = neighborsSupplier.getNeighbors(pos);
+
+            for (int i = 0, n = neighbors.size(); i < n; ++i) {
+                long neighbor = neighbors.offset(pos, i);
+                if (!visited.contains(neighbor)) {
+                    if (condition.test(neighbor, depth + 1)) {
+                        visited.add(neighbor);
+                        enqueue(neighbor);
+                        if (visited.size() >= maxNumBlocks) {
+                            break;
+                        }
+                    }
+
+                    if (stopCondition.getAsBoolean()) {
+                        return depth;
+                    }
+                }
+            }
+
+            if (--numLeftAtDepth == 0) {
+                numLeftAtDepth = frontier.size();
+                if (numLeftAtDepth > 0) {
+                    ++depth;
+                }
+            }
+        }
+
+        return depth;
+    }
+
+    private void enqueue(long pos) {
+        frontier.enqueue(pos);
+        maxFrontierSize = Math.max(maxFrontierSize, frontier.size());
+    }
+
+    /**
+     * @return the position whose neighbors are being tested; only valid while searching
+     */
+    public long getCurrentPos() {
+        return currentPos;
+    }
+
+    public boolean contains(long pos) {
+        return visited.contains(pos);
+    }
+
+    public int size() {
+        return visited.size();
+    }
+
+    /**
+     * @return the visited positions; only valid until this flood fill is closed
+     */
+    public LongSet getVisited() {
+        return visited;
+    }
+
+    public Set<BlockPos> getVisitedBlocks() {
+        Set<BlockPos> blocks = new HashSet<>(visited.size());
+        for (LongIterator it = visited.iterator(); it.hasNext(); ) {
+            blocks.add(BlockPos.fromLong(it.nextLong()));
+        }
+        return blocks;
+    }
+
+    /**
+     * @return a mutable position set to {@code pos}; only valid until the next call
+     */
+    public BlockPos.Mutable unpack(long pos) {
+        return mutablePos.setPos(BlockPos.unpackX(pos), BlockPos.unpackY(pos), BlockPos.unpackZ(pos));
+    }
+
+}
@@ -0,0 +1,17 @@
+package ht.treechop.common.util;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+
+public interface IBlockStateReader {
+
+    /**
+     * @param pos a position packed with {@link BlockPos#toLong()}
+     */
+    BlockState getBlockState(long pos);
+
+    default BlockState getBlockState(BlockPos pos) {
+        return getBlockState(pos.toLong());
+    }
+
+}
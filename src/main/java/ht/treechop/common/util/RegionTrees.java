@@ -0,0 +1,285 @@
+package ht.treechop.common.util;
+
+import ht.treechop.TreeChopMod;
+import ht.treechop.common.config.ConfigHandler;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MutableBoundingBox;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds every tree with logs inside a region in one pass, for things that fell many trees at once. Calling
+ * {@link ChopUtil#getTreeBlocks(net.minecraft.world.World, BlockPos, java.util.concurrent.atomic.AtomicBoolean)} for
+ * each block would scan the same tree once per log and overlapping canopies once per tree.
+ * <p>
+ * Each log is joined to any logs among the 26 blocks around it, using a union-find as the region is read, and trees
+ * that cross the edge of the region are followed outside it. This is not quite the same as a single tree scan, which
+ * only follows logs beside or above the log it starts from: here, logs below a tree are part of it too, so a tree
+ * growing on a log cabin or next to a pile of logs is found together with them. A single scan started from the cabin
+ * would also find the tree, but one started from the tree would not find the cabin. Leaves are then found with one
+ * search starting from every tree at once, so leaves that could belong to more than one tree are given to the tree
+ * that reaches them first.
+ * <p>
+ * At most {@link #MAX_NUM_LOGS} logs are found; if there are more, every tree is marked as
+ * {@linkplain Tree#isTruncated() truncated}.
+ */
+public class RegionTrees {
+
+    private static final int MAX_NUM_LOGS = 65536;
+
+    private final LongArrayList logs = new LongArrayList();
+    private final Long2IntOpenHashMap nodes = new Long2IntOpenHashMap();
+    private final IntArrayList parents = new IntArrayList();
+    private final IntArrayList sizes = new IntArrayList();
+    private boolean truncated = false;
+
+    private RegionTrees() {
+        nodes.defaultReturnValue(-1);
+    }
+
+    /**
+     * Finds the trees without posting any events, so it can be called off the main thread with a reader that allows
+     * it, such as a {@link SnapshotBlockStateReader}.
+     * @param mustHaveLeaves whether to leave out groups of logs without leaves; see
+     * {@link ChopUtil#isPartOfATree(int, boolean, boolean)}
+     */
+    public static List<Tree> find(IBlockStateReader reader, MutableBoundingBox region, boolean mustHaveLeaves) {
+        long startTime = System.nanoTime();
+
+        RegionTrees regionTrees = new RegionTrees();
+        regionTrees.findLogs(reader, region);
+        List<Tree> trees = regionTrees.groupLogs();
+        findLeaves(reader, trees);
+
+        ChopStats.treeScanNanos.record(System.nanoTime() - startTime);
+
+        List<Tree> foundTrees = new ArrayList<>(trees.size());
+        for (Tree tree : trees) {
+            tree.truncated = regionTrees.truncated;
+            if (ChopUtil.isPartOfATree(tree.logs.size(), tree.hasLeaves(), mustHaveLeaves)) {
+                ChopStats.numTreeBlocksScanned.add(tree.logs.size());
+                ChopStats.treeSizes.record(tree.logs.size());
+                foundTrees.add(tree);
+            }
+        }
+
+        return foundTrees;
+    }
+
+    private void findLogs(IBlockStateReader reader, MutableBoundingBox region) {
+        try (FloodFill fill = FloodFill.acquire()) {
+            for (int y = region.minY; y <= region.maxY && logs.size() < MAX_NUM_LOGS; ++y) {
+                for (int z = region.minZ; z <= region.maxZ && logs.size() < MAX_NUM_LOGS; ++z) {
+                    for (int x = region.minX; x <= region.maxX && logs.size() < MAX_NUM_LOGS; ++x) {
+                        long pos = BlockPos.pack(x, y, z);
+                        if (ChopUtil.isBlockALog(reader, pos)) {
+                            addLog(pos);
+                            if (isOnEdge(region, x, y, z)) {
+                                fill.add(pos);
+                            } else {
+                                fill.addVisited(pos);
+                            }
+                        }
+                    }
+                }
+            }
+
+            // Follow the trees that cross the edge of the region
+            fill.search(
+                    pos -> BlockNeighbors.ADJACENTS_AND_DIAGONALS,
+                    (pos, depth) -> {
+                        if (logs.size() < MAX_NUM_LOGS && !isInside(region, pos) && ChopUtil.isBlockALog(reader, pos)) {
+                            addLog(pos);
+                            return true;
+                        } else {
+                            return false;
+                        }
+                    },
+                    MAX_NUM_LOGS
+            );
+        }
+
+        if (logs.size() >= MAX_NUM_LOGS) {
+            truncated = true;
+            TreeChopMod.LOGGER.warn(String.format("Max number of logs in a region reached: %d >= %d blocks", logs.size(), MAX_NUM_LOGS));
+            ChopStats.numTreesAtMaxSize.increment();
+        }
+    }
+
+    private void addLog(long pos) {
+        int node = logs.size();
+        logs.add(pos);
+        nodes.put(pos, node);
+        parents.add(node);
+        sizes.add(1);
+
+        for (int i = 0, n = BlockNeighbors.ADJACENTS_AND_DIAGONALS.size(); i < n; ++i) {
+            int neighbor = nodes.get(BlockNeighbors.ADJACENTS_AND_DIAGONALS.offset(pos, i));
+            if (neighbor >= 0) {
+                union(node, neighbor);
+            }
+        }
+    }
+
+    private int findRoot(int node) {
+        while (parents.getInt(node) != node) {
+            int grandparent = parents.getInt(parents.getInt(node));
+            parents.set(node, grandparent);
+            node = grandparent;
+        }
+        return node;
+    }
+
+    private void union(int a, int b) {
+        int rootA = findRoot(a);
+        int rootB = findRoot(b);
+        if (rootA != rootB) {
+            if (sizes.getInt(rootA) < sizes.getInt(rootB)) {
+                int swap = rootA;
+                rootA = rootB;
+                rootB = swap;
+            }
+            parents.set(rootB, rootA);
+            sizes.set(rootA, sizes.getInt(rootA) + sizes.getInt(rootB));
+        }
+    }
+
+    private List<Tree> groupLogs() {
+        List<Tree> trees = new ArrayList<>();
+        int[] treeIndices = new int[logs.size()];
+        for (int node = 0, n = logs.size(); node < n; ++node) {
+            int root = findRoot(node);
+            if (root == node) {
+                treeIndices[root] = trees.size();
+                trees.add(new Tree(trees.size(), sizes.getInt(root)));
+            }
+        }
+
+        for (int node = 0, n = logs.size(); node < n; ++node) {
+            trees.get(treeIndices[findRoot(node)]).logs.add(logs.getLong(node));
+        }
+
+        return trees;
+    }
+
+    private static void findLeaves(IBlockStateReader reader, List<Tree> trees) {
+        long startTime = System.nanoTime();
+        int maxNumLeavesBlocks = ConfigHandler.COMMON.maxNumLeavesBlocks.get();
+
+        Long2IntOpenHashMap owners = new Long2IntOpenHashMap();
+        try (FloodFill fill = FloodFill.acquire()) {
+            long maxNumBlocks = 0;
+            for (Tree tree : trees) {
+                for (int i = 0, n = tree.logs.size(); i < n; ++i) {
+                    long pos = tree.logs.getLong(i);
+                    owners.put(pos, tree.index);
+                    fill.add(pos);
+                }
+                maxNumBlocks += tree.logs.size() + maxNumLeavesBlocks;
+            }
+
+            fill.search(
+                    pos -> {
+                        byte classification = BlockClassifier.get(reader.getBlockState(pos));
+                        return ((classification & (BlockClassifier.LEAVES | BlockClassifier.LEAVES_BLOCK_CLASS)) == BlockClassifier.LEAVES)
+                                ? BlockNeighbors.ADJACENTS_AND_BELOW_ADJACENTS
+                                : BlockNeighbors.ADJACENTS;
+                    },
+                    (pos, depth) -> {
+                        long fromPos = fill.getCurrentPos();
+                        Tree tree = trees.get(owners.get(fromPos));
+                        if (tree.leaves.size() < maxNumLeavesBlocks && ChopUtil.shouldDestroyLeaves(reader, pos, depth, fromPos)) {
+                            owners.put(pos, tree.index);
+                            tree.leaves.add(pos);
+                            return true;
+                        } else {
+                            return false;
+                        }
+                    },
+                    (int) Math.min(maxNumBlocks, Integer.MAX_VALUE)
+            );
+        }
+
+        for (Tree tree : trees) {
+            if (tree.leaves.size() >= maxNumLeavesBlocks) {
+                ChopStats.numLeavesAtMaxSize.increment();
+            }
+            ChopStats.numLeavesScanned.add(tree.leaves.size());
+            ChopStats.leavesSizes.record(tree.leaves.size());
+        }
+        ChopStats.leavesScanNanos.record(System.nanoTime() - startTime);
+    }
+
+    private static boolean isOnEdge(MutableBoundingBox box, int x, int y, int z) {
+        return x == box.minX || x == box.maxX
+                || y == box.minY || y == box.maxY
+                || z == box.minZ || z == box.maxZ;
+    }
+
+    private static boolean isInside(MutableBoundingBox box, long pos) {
+        int x = BlockPos.unpackX(pos);
+        int y = BlockPos.unpackY(pos);
+        int z = BlockPos.unpackZ(pos);
+        return x >= box.minX && x <= box.maxX
+                && y >= box.minY && y <= box.maxY
+                && z >= box.minZ && z <= box.maxZ;
+    }
+
+    /**
+     * A tree found by {@link #find}. Positions are packed with {@link BlockPos#toLong()}.
+     */
+    public static class Tree {
+        private final int index;
+        private final LongArrayList logs;
+        private final LongArrayList leaves = new LongArrayList();
+        private boolean truncated = false;
+
+        private Tree(int index, int numLogs) {
+            this.index = index;
+            this.logs = new LongArrayList(numLogs);
+        }
+
+        public LongArrayList getLogs() {
+            return logs;
+        }
+
+        public LongArrayList getLeaves() {
+            return leaves;
+        }
+
+        public boolean hasLeaves() {
+            return !leaves.isEmpty();
+        }
+
+        /**
+         * @return whether the search stopped at the maximum number of logs, in which case this tree may be missing
+         * logs, or may be part of a larger tree
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        public Set<BlockPos> getLogBlocks() {
+            Set<BlockPos> blocks = new HashSet<>(logs.size());
+            for (int i = 0, n = logs.size(); i < n; ++i) {
+                blocks.add(BlockPos.fromLong(logs.getLong(i)));
+            }
+            return blocks;
+        }
+
+        public List<BlockPos> getLeavesBlocks() {
+            List<BlockPos> blocks = new ArrayList<>(leaves.size());
+            for (int i = 0, n = leaves.size(); i < n; ++i) {
+                blocks.add(BlockPos.fromLong(leaves.getLong(i)));
+            }
+            return blocks;
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+package ht.treechop.common.util;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+/**
+ * Leaves found right next to logs while scanning a tree for logs, so that {@link ChopUtil#getTreeLeaves} can carry on
+ * from them instead of searching around every log again. Only logs whose every side was seen are recorded; leaves next
+ * to other logs still have to be searched for.
+ */
+public class ScannedLeaves {
+
+    private final LongOpenHashSet logs = new LongOpenHashSet();
+    private final LongOpenHashSet adjacentLeaves = new LongOpenHashSet();
+
+    void addLog(long pos) {
+        logs.add(pos);
+    }
+
+    void addAdjacentLeaves(long pos) {
+        adjacentLeaves.add(pos);
+    }
+
+    /**
+     * Forgets everything, for when a scan stopped before it had seen every side of the logs it recorded.
+     */
+    void clear() {
+        logs.clear();
+        adjacentLeaves.clear();
+    }
+
+    /**
+     * @return whether all leaves next to the log at {@code pos} are in {@link #getAdjacentLeaves()}
+     */
+    public boolean hasLog(long pos) {
+        return logs.contains(pos);
+    }
+
+    public LongSet getAdjacentLeaves() {
+        return adjacentLeaves;
+    }
+
+}
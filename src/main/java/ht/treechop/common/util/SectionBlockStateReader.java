@@ -0,0 +1,67 @@
+package ht.treechop.common.util;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.IChunk;
+
+/**
+ * Reads block states directly from chunk sections, remembering only the most recently used section. Unlike
+ * {@link CachedBlockStateReader}, it holds on to nothing else, so it suits scans that read each block once.
+ */
+public class SectionBlockStateReader implements IBlockStateReader {
+
+    private static final BlockState AIR = Blocks.AIR.getDefaultState();
+    private static final BlockState VOID_AIR = Blocks.VOID_AIR.getDefaultState();
+
+    private final IWorld world;
+
+    private IChunk chunk = null;
+    private int chunkX;
+    private int chunkZ;
+    private ChunkSection section = null;
+    private int sectionY;
+
+    public SectionBlockStateReader(IWorld world) {
+        this.world = world;
+    }
+
+    public IWorld getWorld() {
+        return world;
+    }
+
+    @Override
+    public BlockState getBlockState(long pos) {
+        ChopStats.numBlockStateReads.increment();
+        return readBlockState(BlockPos.unpackX(pos), BlockPos.unpackY(pos), BlockPos.unpackZ(pos));
+    }
+
+    protected BlockState readBlockState(int x, int y, int z) {
+        if (y < 0 || y >= world.getHeight()) {
+            return VOID_AIR;
+        }
+
+        int blockChunkX = x >> 4;
+        int blockChunkZ = z >> 4;
+        int blockSectionY = y >> 4;
+
+        if (chunk == null || chunkX != blockChunkX || chunkZ != blockChunkZ) {
+            chunk = world.getChunk(blockChunkX, blockChunkZ, ChunkStatus.FULL, true);
+            chunkX = blockChunkX;
+            chunkZ = blockChunkZ;
+            section = chunk.getSections()[blockSectionY];
+            sectionY = blockSectionY;
+        } else if (sectionY != blockSectionY) {
+            section = chunk.getSections()[blockSectionY];
+            sectionY = blockSectionY;
+        }
+
+        return ChunkSection.isEmpty(section)
+                ? AIR
+                : section.getBlockState(x & 15, y & 15, z & 15);
+    }
+
+}
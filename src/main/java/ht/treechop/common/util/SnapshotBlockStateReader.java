@@ -0,0 +1,155 @@
+package ht.treechop.common.util;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MutableBoundingBox;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.ChunkStatus;
+
+/**
+ * Reads block states from copies of chunk sections so that a scan can run off the main thread. Sections are copied
+ * on the main thread with {@link #copySection} or {@link #copyMissingSections}; reading a block in a section that has
+ * not been copied returns air and records the section as missing, so the scan can be repeated once it is copied.
+ * <p>
+ * Copying and scanning must not overlap; hand the reader between threads with something that guarantees visibility,
+ * such as an {@link java.util.concurrent.ExecutorService}.
+ * <p>
+ * Sections are the same as chunk sections by default. Scans that only read a few blocks can use smaller sections, so
+ * that less is copied on the main thread.
+ */
+public class SnapshotBlockStateReader implements IBlockStateReader {
+
+    private static final BlockState AIR = Blocks.AIR.getDefaultState();
+    private static final BlockState VOID_AIR = Blocks.VOID_AIR.getDefaultState();
+    private static final BlockState[] EMPTY_SECTION = new BlockState[0];
+
+    private final int height;
+    private final int sectionBits;
+    private final int sectionMask;
+    private final Long2ObjectOpenHashMap<BlockState[]> sections = new Long2ObjectOpenHashMap<>();
+    private final LongOpenHashSet missingSections = new LongOpenHashSet();
+
+    private BlockState[] section = null;
+    private long sectionKey;
+
+    public SnapshotBlockStateReader(IWorld world) {
+        this(world, 4);
+    }
+
+    /**
+     * @param sectionBits the size of the copied sections, as a power of two from 0 to 4
+     */
+    public SnapshotBlockStateReader(IWorld world, int sectionBits) {
+        this.height = world.getHeight();
+        this.sectionBits = sectionBits;
+        this.sectionMask = (1 << sectionBits) - 1;
+    }
+
+    /**
+     * Copies the section containing {@code pos}, if it is not already copied. Must be called on the main thread.
+     */
+    public void copySection(IWorld world, BlockPos pos) {
+        if (pos.getY() >= 0 && pos.getY() < height) {
+            copySection(world, getSectionKey(pos.getX() >> sectionBits, pos.getY() >> sectionBits, pos.getZ() >> sectionBits));
+        }
+    }
+
+    /**
+     * Copies every section that was read since the last call but had not been copied. Must be called on the main
+     * thread.
+     */
+    public void copyMissingSections(IWorld world) {
+        for (LongIterator it = missingSections.iterator(); it.hasNext(); ) {
+            copySection(world, it.nextLong());
+        }
+        missingSections.clear();
+    }
+
+    /**
+     * Copies again the sections that were already copied and overlap {@code box}, for when blocks inside it have
+     * changed. Must be called on the main thread.
+     */
+    public void recopySections(IWorld world, MutableBoundingBox box) {
+        for (int sectionX = box.minX >> sectionBits; sectionX <= box.maxX >> sectionBits; ++sectionX) {
+            for (int sectionY = Math.max(0, box.minY) >> sectionBits; sectionY <= Math.min(height - 1, box.maxY) >> sectionBits; ++sectionY) {
+                for (int sectionZ = box.minZ >> sectionBits; sectionZ <= box.maxZ >> sectionBits; ++sectionZ) {
+                    long key = getSectionKey(sectionX, sectionY, sectionZ);
+                    if (sections.remove(key) != null) {
+                        copySection(world, key);
+                    }
+                }
+            }
+        }
+        section = null;
+    }
+
+    public boolean hasMissingSections() {
+        return !missingSections.isEmpty();
+    }
+
+    private void copySection(IWorld world, long key) {
+        if (sections.containsKey(key)) {
+            return;
+        }
+
+        int x0 = BlockPos.unpackX(key) << sectionBits;
+        int y0 = BlockPos.unpackY(key) << sectionBits;
+        int z0 = BlockPos.unpackZ(key) << sectionBits;
+        ChunkSection chunkSection = world.getChunk(x0 >> 4, z0 >> 4, ChunkStatus.FULL, true).getSections()[y0 >> 4];
+
+        if (ChunkSection.isEmpty(chunkSection)) {
+            sections.put(key, EMPTY_SECTION);
+        } else {
+            int size = 1 << sectionBits;
+            BlockState[] states = new BlockState[size * size * size];
+            for (int y = 0; y < size; ++y) {
+                for (int z = 0; z < size; ++z) {
+                    for (int x = 0; x < size; ++x) {
+                        states[getIndex(x, y, z)] = chunkSection.getBlockState((x0 + x) & 15, (y0 + y) & 15, (z0 + z) & 15);
+                    }
+                }
+            }
+            sections.put(key, states);
+        }
+    }
+
+    @Override
+    public BlockState getBlockState(long pos) {
+        int x = BlockPos.unpackX(pos);
+        int y = BlockPos.unpackY(pos);
+        int z = BlockPos.unpackZ(pos);
+
+        if (y < 0 || y >= height) {
+            return VOID_AIR;
+        }
+
+        long key = getSectionKey(x >> sectionBits, y >> sectionBits, z >> sectionBits);
+        if (section == null || sectionKey != key) {
+            BlockState[] states = sections.get(key);
+            if (states == null) {
+                missingSections.add(key);
+                return AIR;
+            }
+            section = states;
+            sectionKey = key;
+        }
+
+        return (section == EMPTY_SECTION)
+                ? AIR
+                : section[getIndex(x & sectionMask, y & sectionMask, z & sectionMask)];
+    }
+
+    private static long getSectionKey(int sectionX, int sectionY, int sectionZ) {
+        return BlockPos.pack(sectionX, sectionY, sectionZ);
+    }
+
+    private int getIndex(int x, int y, int z) {
+        return (((y << sectionBits) | z) << sectionBits) | x;
+    }
+
+}
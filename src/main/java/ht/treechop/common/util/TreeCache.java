@@ -0,0 +1,36 @@
+package ht.treechop.common.util;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Remembers detected trees between chops, so that chopping a tree that is not ready to fall does not have to detect
+ * it again every time. Set with {@link ChopUtil#setTreeCache}; nothing is remembered by default.
+ */
+public interface TreeCache {
+
+    TreeCache NONE = new TreeCache() {
+        @Override
+        public Set<BlockPos> getTreeBlocks(World world, BlockPos pos, AtomicBoolean hasLeaves) {
+            return null;
+        }
+
+        @Override
+        public void put(World world, Set<BlockPos> treeBlocks, boolean hasLeaves) {
+        }
+    };
+
+    /**
+     * @param hasLeaves set to whether the remembered tree has leaves
+     * @return a copy of the logs of the remembered tree that contains {@code pos}, or {@code null} if there is none
+     */
+    @Nullable
+    Set<BlockPos> getTreeBlocks(World world, BlockPos pos, AtomicBoolean hasLeaves);
+
+    void put(World world, Set<BlockPos> treeBlocks, boolean hasLeaves);
+
+}
@@ -0,0 +1,191 @@
+package ht.treechop.common.util;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+
+import javax.annotation.Nullable;
+
+/**
+ * The structure of the logs being felled, worked out once so that felling does not have to work it out from a set of
+ * positions. Logs are split into trunks, which are the unbroken columns of logs standing on the lowest layer, and
+ * branches, which are the groups of touching logs that are not part of a trunk.
+ * <p>
+ * Positions are packed with {@link BlockPos#toLong()}. The arrays returned by the getters must not be modified.
+ */
+public class TreeModel {
+
+    private final long[] logs;
+    private final long[] base;
+    private final int[] trunkTops;
+    private final long[] branchLogs;
+    private final int[] branchStarts;
+    private final boolean knownToBeLeafless;
+
+    private TreeModel(long[] logs, long[] base, int[] trunkTops, long[] branchLogs, int[] branchStarts, boolean knownToBeLeafless) {
+        this.logs = logs;
+        this.base = base;
+        this.trunkTops = trunkTops;
+        this.branchLogs = branchLogs;
+        this.branchStarts = branchStarts;
+        this.knownToBeLeafless = knownToBeLeafless;
+    }
+
+    /**
+     * @param scannedLeaves the leaves found next to {@code logPositions} while scanning for them, if any
+     */
+    public static TreeModel build(LongCollection logPositions, @Nullable ScannedLeaves scannedLeaves) {
+        LongOpenHashSet logSet = new LongOpenHashSet(logPositions);
+        if (logSet.isEmpty()) {
+            return new TreeModel(new long[0], new long[0], new int[0], new long[0], new int[]{0}, false);
+        }
+
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (LongIterator it = logSet.iterator(); it.hasNext(); ) {
+            int y = BlockPos.unpackY(it.nextLong());
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+
+        long[] logs = sortTopDown(logSet, maxY, maxY - minY + 1);
+
+        // The lowest layer is at the end of the top-down order
+        LongArrayList baseList = new LongArrayList();
+        for (int i = logs.length - 1; i >= 0 && BlockPos.unpackY(logs[i]) == minY; --i) {
+            baseList.add(logs[i]);
+        }
+        long[] base = baseList.toLongArray();
+
+        LongOpenHashSet branchSet = new LongOpenHashSet(logSet);
+        int[] trunkTops = new int[base.length];
+        for (int i = 0; i < base.length; ++i) {
+            long pos = base[i];
+            branchSet.remove(pos);
+            for (long up = BlockPos.offset(pos, Direction.UP); logSet.contains(up); up = BlockPos.offset(up, Direction.UP)) {
+                branchSet.remove(up);
+                pos = up;
+            }
+            trunkTops[i] = BlockPos.unpackY(pos);
+        }
+
+        // Group the rest into branches, going from the top so that each branch starts with its highest log
+        LongArrayList branchLogs = new LongArrayList(branchSet.size());
+        IntArrayList branchStarts = new IntArrayList();
+        for (long pos : logs) {
+            if (branchSet.remove(pos)) {
+                branchStarts.add(branchLogs.size());
+                try (FloodFill fill = FloodFill.acquire()) {
+                    fill.add(pos);
+                    fill.search(
+                            branchPos -> BlockNeighbors.ADJACENTS_AND_DIAGONALS,
+                            (branchPos, depth) -> branchSet.remove(branchPos),
+                            Integer.MAX_VALUE
+                    );
+                    branchLogs.add(pos);
+                    for (LongIterator it = fill.getVisited().iterator(); it.hasNext(); ) {
+                        long branchPos = it.nextLong();
+                        if (branchPos != pos) {
+                            branchLogs.add(branchPos);
+                        }
+                    }
+                }
+            }
+        }
+        branchStarts.add(branchLogs.size());
+
+        return new TreeModel(logs, base, trunkTops, branchLogs.toLongArray(), branchStarts.toIntArray(), isKnownToBeLeafless(logs, scannedLeaves));
+    }
+
+    /**
+     * Sorts by counting the logs on each layer, which takes linear time since a tree has few layers.
+     */
+    private static long[] sortTopDown(LongOpenHashSet logSet, int maxY, int height) {
+        int[] layerEnds = new int[height];
+        for (LongIterator it = logSet.iterator(); it.hasNext(); ) {
+            ++layerEnds[maxY - BlockPos.unpackY(it.nextLong())];
+        }
+        for (int i = 1; i < height; ++i) {
+            layerEnds[i] += layerEnds[i - 1];
+        }
+
+        // Fill each layer backwards from where it ends
+        long[] logs = new long[logSet.size()];
+        for (LongIterator it = logSet.iterator(); it.hasNext(); ) {
+            long pos = it.nextLong();
+            logs[--layerEnds[maxY - BlockPos.unpackY(pos)]] = pos;
+        }
+
+        return logs;
+    }
+
+    private static boolean isKnownToBeLeafless(long[] logs, @Nullable ScannedLeaves scannedLeaves) {
+        if (scannedLeaves == null || !scannedLeaves.getAdjacentLeaves().isEmpty()) {
+            return false;
+        }
+
+        for (long pos : logs) {
+            if (!scannedLeaves.hasLog(pos)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public int size() {
+        return logs.length;
+    }
+
+    /**
+     * @return every log, ordered from the highest layer to the lowest
+     */
+    public long[] getLogsTopDown() {
+        return logs;
+    }
+
+    /**
+     * @return the logs on the lowest layer, each of which is the bottom of a trunk
+     */
+    public long[] getBase() {
+        return base;
+    }
+
+    /**
+     * @return for each log in {@link #getBase()}, the height of the top of the trunk standing on it
+     */
+    public int[] getTrunkTops() {
+        return trunkTops;
+    }
+
+    public int getNumBranches() {
+        return branchStarts.length - 1;
+    }
+
+    /**
+     * @return where in {@link #getBranchLogs()} the branch at {@code index} starts; it ends where the next one starts,
+     * and {@code getBranchStart(getNumBranches())} is the end of the last one
+     */
+    public int getBranchStart(int index) {
+        return branchStarts[index];
+    }
+
+    /**
+     * @return the logs that are not part of a trunk, grouped by branch, with the highest log of each branch first
+     */
+    public long[] getBranchLogs() {
+        return branchLogs;
+    }
+
+    /**
+     * @return true if every log was scanned for leaves and none had any next to it, so there are no leaves to look for
+     */
+    public boolean isKnownToBeLeafless() {
+        return knownToBeLeafless;
+    }
+
+}
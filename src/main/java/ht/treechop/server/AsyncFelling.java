@@ -0,0 +1,377 @@
+package ht.treechop.server;
+
+import ht.treechop.TreeChopMod;
+import ht.treechop.common.config.ConfigHandler;
+import ht.treechop.common.util.BlockNeighbors;
+import ht.treechop.common.util.CachedBlockStateReader;
+import ht.treechop.common.util.ChopResult;
+import ht.treechop.common.util.ChopUtil;
+import ht.treechop.common.util.ScannedLeaves;
+import ht.treechop.common.util.SnapshotBlockStateReader;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MutableBoundingBox;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.eventbus.api.EventPriority;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
+import net.minecraftforge.fml.event.server.FMLServerStoppingEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Detects trees on background threads when felling. Chops that can be finished without scanning much of the tree are
+ * finished right away instead. Detection reads from a {@link SnapshotBlockStateReader} that starts with only the
+ * section of the chopped block; sections it needed but did not have are copied on the next tick and detection is
+ * repeated. Once detection is complete, the result is checked against the world and applied on the server thread.
+ * <p>
+ * Trees chopped on the same tick are detected in parallel. Finished detections are applied in the order they were
+ * submitted. A detection whose bounds overlap those of a tree that was applied since its snapshot was taken is stale,
+ * so the overlapping sections are copied again and detection is repeated. So is a detection whose blocks, or the blocks
+ * next to its logs, changed in the world in some other way since its snapshot was taken.
+ * <p>
+ * Chops still pending when the server stops are finished on the server thread.
+ */
+@EventBusSubscriber(modid = TreeChopMod.MOD_ID)
+public class AsyncFelling {
+
+    private static final int MAX_NUM_DETECTION_ROUNDS = 8;
+    private static final int MAX_NUM_SYNC_TREE_BLOCKS = 256;
+
+    private static final List<Job> jobs = new LinkedList<>();
+    private static final WorldPositions pendingPositions = new WorldPositions();
+    private static final List<Commit> recentCommits = new ArrayList<>();
+    private static long numCommits = 0;
+    private static ExecutorService executor = null;
+
+    public static boolean isEnabled() {
+        return ConfigHandler.COMMON.asyncTreeDetection.get();
+    }
+
+    /**
+     * @return whether a chop on the block at {@code pos} is waiting to be finished
+     */
+    public static boolean isPending(World world, BlockPos pos) {
+        return pendingPositions.contains(world, pos);
+    }
+
+    /**
+     * Finishes detecting the tree for {@code chop} now if that is quick; see
+     * {@link ChopUtil#getChopResultIfQuick}. Otherwise, detects it off the main thread and finishes the chop on a
+     * later tick.
+     * @return the result to apply now, or {@code null} if the chop will be finished later
+     */
+    public static ChopResult chopNowOrSubmit(PendingChop chop) {
+        ChopResult chopResult = ChopUtil.getChopResultIfQuick(chop.getWorld(), chop.getPos(), chop.getAgent(), chop.getNumChops(), MAX_NUM_SYNC_TREE_BLOCKS);
+        if (chopResult == null) {
+            submit(chop);
+        }
+        return chopResult;
+    }
+
+    private static void submit(PendingChop chop) {
+        ChopAdmission.reserve(chop);
+        Job job = new Job(chop, ConfigHandler.COMMON.breakLeaves.get());
+        job.start();
+        jobs.add(job);
+        pendingPositions.add(chop.getWorld(), chop.getPos());
+    }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || jobs.isEmpty()) {
+            return;
+        }
+
+        // Finishing a chop can post events that submit more chops, so take finished jobs out of the list first
+        List<Job> finishedJobs = jobs.stream().filter(job -> job.future.isDone()).collect(Collectors.toList());
+        jobs.removeAll(finishedJobs);
+
+        for (Job job : finishedJobs) {
+            commit(job);
+            if (!jobs.contains(job)) {
+                pendingPositions.remove(job.chop.getWorld(), job.chop.getPos());
+            }
+        }
+
+        // Forget commits that every remaining job's snapshot already includes
+        long firstUnseenCommit = jobs.stream().mapToLong(job -> job.firstUnseenCommit).min().orElse(numCommits);
+        recentCommits.removeIf(commit -> commit.index < firstUnseenCommit);
+    }
+
+    // Before FellingScheduler applies what is left of its fellings, since finishing these chops can schedule more
+    @SubscribeEvent(priority = EventPriority.HIGH)
+    public static void onServerStopping(FMLServerStoppingEvent event) {
+        List<Job> pendingJobs = new ArrayList<>(jobs);
+        jobs.clear();
+        for (Job job : pendingJobs) {
+            job.future.cancel(true);
+            finishNow(job.chop);
+        }
+
+        pendingPositions.clear();
+        recentCommits.clear();
+
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Finishes {@code chop} on the server thread, detecting the tree there.
+     */
+    private static void finishNow(PendingChop chop) {
+        if (chop.isValid()) {
+            chop.finish();
+        } else {
+            // The chopped block changed while the tree was being detected, so chop it as it is now
+            ChopAdmission.release(chop);
+            PendingChop refreshedChop = chop.refresh();
+            if (refreshedChop != null) {
+                refreshedChop.finish();
+            }
+        }
+    }
+
+    private static void commit(Job job) {
+        PendingChop chop = job.chop;
+        if (!chop.isValid()) {
+            finishNow(chop);
+            return;
+        }
+
+        Detection detection;
+        try {
+            detection = job.future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            TreeChopMod.LOGGER.warn(String.format("Failed to detect tree at %s off the main thread", chop.getPos()), e);
+            chop.finish();
+            return;
+        }
+
+        if (job.snapshot.hasMissingSections()) {
+            if (++job.numRounds < MAX_NUM_DETECTION_ROUNDS) {
+                job.snapshot.copyMissingSections(chop.getWorld());
+                job.start();
+                jobs.add(job);
+            } else {
+                chop.finish();
+            }
+            return;
+        }
+
+        ServerWorld world = chop.getWorld();
+        List<MutableBoundingBox> overlappingCommitBounds = recentCommits.stream()
+                .filter(commit -> commit.index >= job.firstUnseenCommit
+                        && commit.world == world
+                        && commit.bounds.intersectsWith(detection.bounds))
+                .map(commit -> commit.bounds)
+                .collect(Collectors.toList());
+        if (!overlappingCommitBounds.isEmpty()) {
+            restartOrFinish(job, overlappingCommitBounds);
+            return;
+        }
+
+        // Logs and leaves can also change without a commit, for example when players break or place them
+        if (hasChangedSinceSnapshot(world, job.snapshot, detection)) {
+            restartOrFinish(job, Collections.singletonList(detection.bounds));
+            return;
+        }
+
+        ChopResult chopResult = ChopUtil.getChopResult(
+                world,
+                chop.getPos(),
+                chop.getAgent(),
+                chop.getNumChops(),
+                detection.treeBlocks,
+                detection.hasLeaves
+        );
+
+        if (detection.leaves != null) {
+            chopResult.setDetectedLeaves(detection.leaves);
+        }
+
+        chop.finish(chopResult);
+        recentCommits.add(new Commit(numCommits++, world, detection.bounds));
+    }
+
+    private static void restartOrFinish(Job job, List<MutableBoundingBox> changedBounds) {
+        if (++job.numRounds < MAX_NUM_DETECTION_ROUNDS) {
+            job.restart(changedBounds);
+            jobs.add(job);
+        } else {
+            job.chop.finish();
+        }
+    }
+
+    /**
+     * @return whether any of the detected logs or leaves, or any block that the tree could have grown into from its
+     * logs, is different in the world than in {@code snapshot}. Leaves whose distance from the nearest log changed count
+     * as different, so leaves held up by a new log are not broken.
+     */
+    private static boolean hasChangedSinceSnapshot(World world, SnapshotBlockStateReader snapshot, Detection detection) {
+        CachedBlockStateReader worldReader = new CachedBlockStateReader(world);
+        BlockNeighbors neighbors = BlockNeighbors.HORIZONTAL_AND_ABOVE;
+        for (BlockPos treeBlock : detection.treeBlocks) {
+            long pos = treeBlock.toLong();
+            if (hasChanged(worldReader, snapshot, pos)) {
+                return true;
+            }
+
+            for (int i = 0, n = neighbors.size(); i < n; ++i) {
+                if (hasChanged(worldReader, snapshot, neighbors.offset(pos, i))) {
+                    return true;
+                }
+            }
+        }
+
+        if (detection.leaves != null) {
+            for (BlockPos leavesBlock : detection.leaves) {
+                if (hasChanged(worldReader, snapshot, leavesBlock.toLong())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean hasChanged(CachedBlockStateReader worldReader, SnapshotBlockStateReader snapshot, long pos) {
+        return worldReader.getBlockState(pos) != snapshot.getBlockState(pos);
+    }
+
+    private static Detection detect(SnapshotBlockStateReader snapshot, BlockPos pos, boolean breakLeaves) {
+        AtomicBoolean hasLeaves = new AtomicBoolean(false);
+        ScannedLeaves scannedLeaves = breakLeaves ? new ScannedLeaves() : null;
+        Set<BlockPos> treeBlocks = ChopUtil.scanTreeBlocks(snapshot, pos, logPos -> ChopUtil.isBlockALog(snapshot, logPos), hasLeaves, scannedLeaves);
+        List<BlockPos> leaves = (breakLeaves && !snapshot.hasMissingSections())
+                ? ChopUtil.getTreeLeaves(snapshot, treeBlocks, scannedLeaves)
+                : null;
+        return new Detection(treeBlocks, hasLeaves.get(), leaves, getBounds(pos, treeBlocks, leaves));
+    }
+
+    /**
+     * @return the box containing {@code pos}, {@code treeBlocks} and {@code leaves}, grown by one block on every side
+     * to include the blocks that felling could affect
+     */
+    private static MutableBoundingBox getBounds(BlockPos pos, Set<BlockPos> treeBlocks, List<BlockPos> leaves) {
+        MutableBoundingBox bounds = new MutableBoundingBox(pos, pos);
+        treeBlocks.forEach(treeBlock -> expandTo(bounds, treeBlock));
+        if (leaves != null) {
+            leaves.forEach(leavesBlock -> expandTo(bounds, leavesBlock));
+        }
+        return new MutableBoundingBox(
+                bounds.minX - 1, bounds.minY - 1, bounds.minZ - 1,
+                bounds.maxX + 1, bounds.maxY + 1, bounds.maxZ + 1
+        );
+    }
+
+    private static void expandTo(MutableBoundingBox bounds, BlockPos pos) {
+        bounds.minX = Math.min(bounds.minX, pos.getX());
+        bounds.minY = Math.min(bounds.minY, pos.getY());
+        bounds.minZ = Math.min(bounds.minZ, pos.getZ());
+        bounds.maxX = Math.max(bounds.maxX, pos.getX());
+        bounds.maxY = Math.max(bounds.maxY, pos.getY());
+        bounds.maxZ = Math.max(bounds.maxZ, pos.getZ());
+    }
+
+    private static ExecutorService getExecutor() {
+        if (executor == null) {
+            int numThreads = ConfigHandler.COMMON.asyncTreeDetectionThreads.get();
+            if (numThreads == 0) {
+                numThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1); // Leave a core for the server thread
+            }
+
+            AtomicInteger threadCount = new AtomicInteger(0);
+            ClassLoader classLoader = AsyncFelling.class.getClassLoader();
+            executor = new ForkJoinPool(
+                    numThreads,
+                    pool -> {
+                        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                        thread.setName("TreeChop Detection #" + threadCount.incrementAndGet());
+                        thread.setContextClassLoader(classLoader);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    null,
+                    true
+            );
+        }
+
+        return executor;
+    }
+
+    private static class Job {
+        private final PendingChop chop;
+        private final boolean breakLeaves;
+        private final SnapshotBlockStateReader snapshot;
+        private Future<Detection> future;
+        private long firstUnseenCommit;
+        private int numRounds = 0;
+
+        public Job(PendingChop chop, boolean breakLeaves) {
+            this.chop = chop;
+            this.breakLeaves = breakLeaves;
+            this.snapshot = new SnapshotBlockStateReader(chop.getWorld());
+            this.snapshot.copySection(chop.getWorld(), chop.getPos());
+            this.firstUnseenCommit = numCommits;
+        }
+
+        public void start() {
+            future = getExecutor().submit(() -> detect(snapshot, chop.getPos(), breakLeaves));
+        }
+
+        /**
+         * Copies again the parts of the snapshot inside {@code changedBounds} and starts over.
+         */
+        public void restart(List<MutableBoundingBox> changedBounds) {
+            changedBounds.forEach(bounds -> snapshot.recopySections(chop.getWorld(), bounds));
+            firstUnseenCommit = numCommits;
+            start();
+        }
+    }
+
+    /**
+     * A tree that was felled using a detection, which later detections may overlap.
+     */
+    private static class Commit {
+        private final long index;
+        private final World world;
+        private final MutableBoundingBox bounds;
+
+        public Commit(long index, World world, MutableBoundingBox bounds) {
+            this.index = index;
+            this.world = world;
+            this.bounds = bounds;
+        }
+    }
+
+    private static class Detection {
+        private final Set<BlockPos> treeBlocks;
+        private final boolean hasLeaves;
+        private final List<BlockPos> leaves;
+        private final MutableBoundingBox bounds;
+
+        public Detection(Set<BlockPos> treeBlocks, boolean hasLeaves, List<BlockPos> leaves, MutableBoundingBox bounds) {
+            this.treeBlocks = treeBlocks;
+            this.hasLeaves = hasLeaves;
+            this.leaves = leaves;
+            this.bounds = bounds;
+        }
+    }
+
+}
@@ -0,0 +1,221 @@
+package ht.treechop.server;
+
+import ht.treechop.TreeChopMod;
+import ht.treechop.common.config.ConfigHandler;
+import ht.treechop.common.util.ChopResult;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
+import net.minecraftforge.fml.event.server.FMLServerStoppingEvent;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Limits how much chopping can happen on the server. Each player has a token bucket that refills at
+ * {@code maxChopsPerSecondPerPlayer}; chops made with an empty bucket are denied. All players share a budget of
+ * {@code maxTreeBlocksPerTick} blocks changed by chopping per tick; chops made while the budget is used up are queued
+ * and started on later ticks, and denied if the queue is full. Both limits are off by default.
+ * <p>
+ * Chops handed to {@link AsyncFelling} are not applied until a later tick, so their expected cost is reserved from the
+ * budget when they are handed off and given back when they are applied.
+ */
+@EventBusSubscriber(modid = TreeChopMod.MOD_ID)
+public class ChopAdmission {
+
+    private static final Map<UUID, TokenBucket> playerBuckets = new HashMap<>();
+    private static final Deque<PendingChop> queue = new ArrayDeque<>();
+    private static final WorldPositions queuedPositions = new WorldPositions();
+    private static long numBlocksAvailable = 0;
+    private static double averageFellingSize = 64;
+
+    private static long numAdmittedChops = 0;
+    private static long numQueuedChops = 0;
+    private static long numChopsDeniedForPlayer = 0;
+    private static long numChopsDeniedForFullQueue = 0;
+
+    /**
+     * @return true if {@code chop} can go ahead now; otherwise, it was queued or denied, and its break event should be
+     * canceled
+     */
+    public static boolean tryAdmit(PendingChop chop) {
+        if (!takePlayerToken(chop)) {
+            ++numChopsDeniedForPlayer;
+            return false;
+        }
+
+        int maxBlocksPerTick = ConfigHandler.COMMON.maxTreeBlocksPerTick.get();
+        if (maxBlocksPerTick == 0 || (queue.isEmpty() && numBlocksAvailable > 0)) {
+            ++numAdmittedChops;
+            return true;
+        }
+
+        if (queue.size() < ConfigHandler.COMMON.maxQueuedChops.get()) {
+            queue.add(chop);
+            queuedPositions.add(chop.getWorld(), chop.getPos());
+            ++numQueuedChops;
+        } else {
+            ++numChopsDeniedForFullQueue;
+        }
+
+        return false;
+    }
+
+    /**
+     * Counts {@code numBlocks} changed by an admitted chop against the per-tick budget. The budget can go into debt,
+     * which is paid off on the following ticks.
+     */
+    public static void charge(int numBlocks, boolean felling) {
+        numBlocksAvailable -= numBlocks;
+        if (felling) {
+            averageFellingSize += (numBlocks - averageFellingSize) / 16;
+        }
+    }
+
+    /**
+     * Takes the expected cost of a felling from the budget until it is applied, for a chop that will be applied on a
+     * later tick.
+     */
+    public static void reserve(PendingChop chop) {
+        if (ConfigHandler.COMMON.maxTreeBlocksPerTick.get() > 0) {
+            int numBlocks = Math.max(1, (int) Math.ceil(averageFellingSize));
+            numBlocksAvailable -= numBlocks;
+            chop.setNumReservedBlocks(chop.getNumReservedBlocks() + numBlocks);
+        }
+    }
+
+    /**
+     * Gives back what was reserved for {@code chop}, for when it is applied and charged for what it actually changed,
+     * or when it is dropped.
+     */
+    public static void release(PendingChop chop) {
+        numBlocksAvailable += chop.getNumReservedBlocks();
+        chop.setNumReservedBlocks(0);
+    }
+
+    /**
+     * @return whether a chop on the block at {@code pos} is waiting in the queue
+     */
+    public static boolean isQueued(World world, BlockPos pos) {
+        return queuedPositions.contains(world, pos);
+    }
+
+    private static boolean takePlayerToken(PendingChop chop) {
+        double chopsPerSecond = ConfigHandler.COMMON.maxChopsPerSecondPerPlayer.get();
+        if (chopsPerSecond <= 0) {
+            return true;
+        }
+
+        long time = chop.getWorld().getServer().getTickCounter();
+        TokenBucket bucket = playerBuckets.computeIfAbsent(chop.getAgent().getUniqueID(), uuid -> new TokenBucket(time));
+        return bucket.tryTake(time, chopsPerSecond / 20.0, ConfigHandler.COMMON.maxChopBurstPerPlayer.get());
+    }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.START) {
+            return;
+        }
+
+        int maxBlocksPerTick = ConfigHandler.COMMON.maxTreeBlocksPerTick.get();
+        numBlocksAvailable = Math.min(numBlocksAvailable + maxBlocksPerTick, maxBlocksPerTick);
+
+        while (!queue.isEmpty() && (numBlocksAvailable > 0 || maxBlocksPerTick == 0)) {
+            PendingChop chop = queue.poll();
+            queuedPositions.remove(chop.getWorld(), chop.getPos());
+            if (!chop.isValid()) {
+                chop = chop.refresh(); // The chopped block changed while waiting, so chop it as it is now
+            }
+
+            if (chop != null) {
+                ++numAdmittedChops;
+                if (chop.isFelling() && AsyncFelling.isEnabled()) {
+                    ChopResult chopResult = AsyncFelling.chopNowOrSubmit(chop);
+                    if (chopResult != null) {
+                        chop.finish(chopResult);
+                    }
+                } else {
+                    chop.finish();
+                }
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        playerBuckets.remove(event.getPlayer().getUniqueID());
+    }
+
+    @SubscribeEvent
+    public static void onServerStopping(FMLServerStoppingEvent event) {
+        if (numQueuedChops > 0 || numChopsDeniedForPlayer > 0 || numChopsDeniedForFullQueue > 0) {
+            TreeChopMod.LOGGER.info(String.format(
+                    "Chops admitted: %d; queued: %d; denied by player limit: %d; denied by full queue: %d",
+                    numAdmittedChops,
+                    numQueuedChops,
+                    numChopsDeniedForPlayer,
+                    numChopsDeniedForFullQueue
+            ));
+        }
+
+        queue.clear();
+        queuedPositions.clear();
+        playerBuckets.clear();
+        numBlocksAvailable = 0;
+    }
+
+    /**
+     * Starts the counters reported by {@link StatsCommand} over.
+     */
+    public static void resetStats() {
+        numAdmittedChops = 0;
+        numQueuedChops = 0;
+        numChopsDeniedForPlayer = 0;
+        numChopsDeniedForFullQueue = 0;
+    }
+
+    public static long getNumAdmittedChops() {
+        return numAdmittedChops;
+    }
+
+    public static long getNumQueuedChops() {
+        return numQueuedChops;
+    }
+
+    public static long getNumChopsDeniedForPlayer() {
+        return numChopsDeniedForPlayer;
+    }
+
+    public static long getNumChopsDeniedForFullQueue() {
+        return numChopsDeniedForFullQueue;
+    }
+
+    // Package-private for tests
+    static class TokenBucket {
+        private double numTokens = Double.POSITIVE_INFINITY;
+        private long lastRefillTime;
+
+        public TokenBucket(long time) {
+            lastRefillTime = time;
+        }
+
+        public boolean tryTake(long time, double tokensPerTick, int maxTokens) {
+            numTokens = Math.min(numTokens + Math.max(0, time - lastRefillTime) * tokensPerTick, maxTokens);
+            lastRefillTime = time;
+
+            if (numTokens >= 1) {
+                numTokens -= 1;
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package ht.treechop.server;
+
+import ht.treechop.TreeChopMod;
+import ht.treechop.common.config.ConfigHandler;
+import ht.treechop.common.util.Felling;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
+import net.minecraftforge.fml.event.server.FMLServerStoppingEvent;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Spreads large fellings over several server ticks, breaking at most {@code maxFellingBlocksPerTick} blocks and
+ * spending at most {@code maxFellingMicrosecondsPerTick} per tick. Fellings are worked through in the order they were
+ * scheduled.
+ */
+@EventBusSubscriber(modid = TreeChopMod.MOD_ID)
+public class FellingScheduler {
+
+    private static final Deque<Felling> fellings = new ArrayDeque<>();
+
+    /**
+     * @return whether a felling of {@code numBlocks} blocks is too big to do in one go
+     */
+    public static boolean shouldSchedule(World world, int numBlocks) {
+        int maxBlocksPerTick = ConfigHandler.COMMON.maxFellingBlocksPerTick.get();
+        return world instanceof ServerWorld && maxBlocksPerTick > 0 && numBlocks > maxBlocksPerTick;
+    }
+
+    /**
+     * Breaks the targeted block right away and the rest of the tree over the following ticks.
+     */
+    public static void schedule(Felling felling) {
+        felling.applyNext();
+        if (!felling.isDone()) {
+            felling.notifyNeighbors();
+            fellings.add(felling);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || fellings.isEmpty()) {
+            return;
+        }
+
+        int numBlocksLeft = ConfigHandler.COMMON.maxFellingBlocksPerTick.get();
+        long deadline = System.nanoTime() + ConfigHandler.COMMON.maxFellingMicrosecondsPerTick.get() * 1000L;
+
+        do {
+            Felling felling = fellings.peek();
+            felling.applyNext();
+            if (felling.isDone()) {
+                fellings.poll();
+            }
+        } while (!fellings.isEmpty() && --numBlocksLeft > 0 && System.nanoTime() < deadline);
+
+        if (!fellings.isEmpty()) {
+            fellings.peek().notifyNeighbors();
+        }
+    }
+
+    @SubscribeEvent
+    public static void onServerStopping(FMLServerStoppingEvent event) {
+        while (!fellings.isEmpty()) {
+            fellings.poll().applyAll();
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+package ht.treechop.server;
+
+import ht.treechop.common.Common;
+import ht.treechop.common.util.ChopResult;
+import ht.treechop.common.util.ChopUtil;
+import ht.treechop.common.util.FauxPlayerInteractionManager;
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.server.ServerWorld;
+
+/**
+ * A chop that was taken out of its break event to be finished on a later tick. The chopped block is left as it is
+ * until then. The chop is finished with whatever tool the agent is holding by then, as long as it is the same kind of
+ * item as the one it was started with.
+ */
+public class PendingChop {
+
+    private final ServerWorld world;
+    private final ServerPlayerEntity agent;
+    private final BlockPos pos;
+    private final BlockState blockState;
+    private final Item toolItem;
+    private final int numChops;
+    private final boolean felling;
+    private final int expToDrop;
+    private int numReservedBlocks = 0;
+
+    public PendingChop(ServerWorld world, ServerPlayerEntity agent, BlockPos pos, BlockState blockState, ItemStack tool, int numChops, boolean felling, int expToDrop) {
+        this.world = world;
+        this.agent = agent;
+        this.pos = pos.toImmutable();
+        this.blockState = blockState;
+        this.toolItem = tool.getItem();
+        this.numChops = numChops;
+        this.felling = felling;
+        this.expToDrop = expToDrop;
+    }
+
+    public ServerWorld getWorld() {
+        return world;
+    }
+
+    public ServerPlayerEntity getAgent() {
+        return agent;
+    }
+
+    public BlockPos getPos() {
+        return pos;
+    }
+
+    public BlockState getBlockState() {
+        return blockState;
+    }
+
+    public int getNumChops() {
+        return numChops;
+    }
+
+    public boolean isFelling() {
+        return felling;
+    }
+
+    /**
+     * @return the number of blocks reserved for this chop by {@link ChopAdmission#reserve}
+     */
+    public int getNumReservedBlocks() {
+        return numReservedBlocks;
+    }
+
+    public void setNumReservedBlocks(int numReservedBlocks) {
+        this.numReservedBlocks = numReservedBlocks;
+    }
+
+    /**
+     * @return whether the chop can still be finished; false if the agent left, switched tools, or the chopped block
+     * changed
+     */
+    public boolean isValid() {
+        return isAgentReady() && world.getBlockState(pos) == blockState;
+    }
+
+    private boolean isAgentReady() {
+        return !agent.hasDisconnected()
+                && agent.isAlive()
+                && agent.getEntityWorld() == world
+                && agent.getHeldItemMainhand().getItem() == toolItem;
+    }
+
+    /**
+     * @return the same chop on the block as it is now, for when the block changed while the chop was waiting, or
+     * {@code null} if the agent can no longer chop or the block is no longer a log
+     */
+    public PendingChop refresh() {
+        BlockState currentState = world.getBlockState(pos);
+        return (isAgentReady() && ChopUtil.isBlockALog(currentState))
+                ? new PendingChop(world, agent, pos, currentState, agent.getHeldItemMainhand(), numChops, felling, expToDrop)
+                : null;
+    }
+
+    /**
+     * Detects the tree on the calling thread and finishes the chop.
+     */
+    public void finish() {
+        finish(ChopUtil.getChopResult(world, pos, agent, numChops, felling));
+    }
+
+    /**
+     * Applies {@code chopResult}, or breaks the block normally if it cannot be applied, as would have happened if the
+     * break event had not been canceled.
+     */
+    public void finish(ChopResult chopResult) {
+        ChopAdmission.release(this);
+        if (!Common.applyChopResult(world, agent, pos, blockState, agent.getHeldItemMainhand(), chopResult)) {
+            FauxPlayerInteractionManager.harvestBlockSkippingOnBlockStartBreak(agent, world, blockState, pos, expToDrop);
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package ht.treechop.server;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import ht.treechop.TreeChopMod;
+import ht.treechop.common.util.ChopStats;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.util.text.StringTextComponent;
+import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code /treechop stats} shows the {@link ChopStats} and {@link ChopAdmission} counters, and
+ * {@code /treechop stats reset} starts them over.
+ */
+@EventBusSubscriber(modid = TreeChopMod.MOD_ID)
+public class StatsCommand {
+
+    @SubscribeEvent
+    public static void onRegisterCommands(RegisterCommandsEvent event) {
+        register(event.getDispatcher());
+    }
+
+    private static void register(CommandDispatcher<CommandSource> dispatcher) {
+        dispatcher.register(Commands.literal(TreeChopMod.MOD_ID)
+                .requires(source -> source.hasPermissionLevel(2))
+                .then(Commands.literal("stats")
+                        .executes(StatsCommand::showStats)
+                        .then(Commands.literal("reset")
+                                .executes(StatsCommand::resetStats))));
+    }
+
+    private static int showStats(CommandContext<CommandSource> context) {
+        for (String line : describe()) {
+            context.getSource().sendFeedback(new StringTextComponent(line), false);
+        }
+        return 1;
+    }
+
+    private static int resetStats(CommandContext<CommandSource> context) {
+        ChopStats.reset();
+        ChopAdmission.resetStats();
+        StatsCsvWriter.reset();
+        context.getSource().sendFeedback(new StringTextComponent("TreeChop stats reset"), true);
+        return 1;
+    }
+
+    public static List<String> describe() {
+        List<String> lines = new ArrayList<>(ChopStats.describe());
+        lines.add(String.format("chops_admitted: %d", ChopAdmission.getNumAdmittedChops()));
+        lines.add(String.format("chops_queued: %d", ChopAdmission.getNumQueuedChops()));
+        lines.add(String.format("chops_denied_by_player_limit: %d", ChopAdmission.getNumChopsDeniedForPlayer()));
+        lines.add(String.format("chops_denied_by_full_queue: %d", ChopAdmission.getNumChopsDeniedForFullQueue()));
+        return lines;
+    }
+
+}
@@ -0,0 +1,89 @@
+package ht.treechop.server;
+
+import ht.treechop.TreeChopMod;
+import ht.treechop.common.config.ConfigHandler;
+import ht.treechop.common.util.ChopStats;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
+import net.minecraftforge.fml.loading.FMLPaths;
+import net.minecraftforge.fml.server.ServerLifecycleHooks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+
+/**
+ * Appends a row of {@link ChopStats} to {@code logs/treechop-stats.csv} every {@code statsCsvIntervalSeconds}. Values
+ * are cumulative since the server started or the stats were last reset. If the file was written with different
+ * columns, it is moved aside to a file named after the time it was replaced, and a new file is started.
+ */
+@EventBusSubscriber(modid = TreeChopMod.MOD_ID)
+public class StatsCsvWriter {
+
+    private static final String ADMISSION_COLUMNS = "chops_admitted,chops_queued,chops_denied_by_player_limit,chops_denied_by_full_queue";
+
+    private static boolean failed = false;
+    private static boolean headerChecked = false;
+
+    /**
+     * Tries writing again after a failure, and checks the header again before the next row.
+     */
+    public static void reset() {
+        failed = false;
+        headerChecked = false;
+    }
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || failed) {
+            return;
+        }
+
+        int intervalSeconds = ConfigHandler.COMMON.statsCsvIntervalSeconds.get();
+        if (intervalSeconds > 0 && ServerLifecycleHooks.getCurrentServer().getTickCounter() % (intervalSeconds * 20) == 0) {
+            write();
+        }
+    }
+
+    private static void write() {
+        Path path = FMLPaths.GAMEDIR.get().resolve("logs").resolve("treechop-stats.csv");
+        try {
+            String header = ChopStats.getCsvHeader() + "," + ADMISSION_COLUMNS;
+            if (!headerChecked && Files.exists(path) && !header.equals(readHeader(path))) {
+                Path oldPath = path.resolveSibling(String.format("treechop-stats-%d.csv", System.currentTimeMillis()));
+                Files.move(path, oldPath);
+                TreeChopMod.LOGGER.info(String.format("Stats columns changed; moved old stats to %s", oldPath));
+            }
+            headerChecked = true;
+
+            if (!Files.exists(path)) {
+                Files.createDirectories(path.getParent());
+                Files.write(path, Collections.singletonList(header), StandardCharsets.UTF_8);
+            }
+
+            String row = String.format("%s,%d,%d,%d,%d",
+                    ChopStats.getCsvRow(),
+                    ChopAdmission.getNumAdmittedChops(),
+                    ChopAdmission.getNumQueuedChops(),
+                    ChopAdmission.getNumChopsDeniedForPlayer(),
+                    ChopAdmission.getNumChopsDeniedForFullQueue()
+            );
+            Files.write(path, Collections.singletonList(row), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            TreeChopMod.LOGGER.warn(String.format("Could not write stats to %s; giving up until restart: %s", path, e.getMessage()));
+            failed = true;
+        }
+    }
+
+    private static String readHeader(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return reader.readLine();
+        }
+    }
+
+}
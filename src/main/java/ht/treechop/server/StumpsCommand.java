@@ -0,0 +1,96 @@
+package ht.treechop.server;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import ht.treechop.TreeChopMod;
+import ht.treechop.common.capabilities.ChunkChopIndex;
+import it.unimi.dsi.fastutil.longs.Long2ByteMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.block.Blocks;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MutableBoundingBox;
+import net.minecraft.util.text.StringTextComponent;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
+
+/**
+ * {@code /treechop stumps [radius]} counts the chopped log blocks in loaded chunks around the command source, and
+ * {@code /treechop stumps clear [radius]} removes them. The radius is in blocks.
+ */
+@EventBusSubscriber(modid = TreeChopMod.MOD_ID)
+public class StumpsCommand {
+
+    private static final int DEFAULT_RADIUS = 64;
+    private static final int MAX_RADIUS = 512;
+    private static final String RADIUS_ARGUMENT = "radius";
+
+    @SubscribeEvent
+    public static void onRegisterCommands(RegisterCommandsEvent event) {
+        register(event.getDispatcher());
+    }
+
+    private static void register(CommandDispatcher<CommandSource> dispatcher) {
+        dispatcher.register(Commands.literal(TreeChopMod.MOD_ID)
+                .requires(source -> source.hasPermissionLevel(2))
+                .then(Commands.literal("stumps")
+                        .executes(context -> findStumps(context, DEFAULT_RADIUS))
+                        .then(Commands.argument(RADIUS_ARGUMENT, IntegerArgumentType.integer(1, MAX_RADIUS))
+                                .executes(context -> findStumps(context, IntegerArgumentType.getInteger(context, RADIUS_ARGUMENT))))
+                        .then(Commands.literal("clear")
+                                .executes(context -> clearStumps(context, DEFAULT_RADIUS))
+                                .then(Commands.argument(RADIUS_ARGUMENT, IntegerArgumentType.integer(1, MAX_RADIUS))
+                                        .executes(context -> clearStumps(context, IntegerArgumentType.getInteger(context, RADIUS_ARGUMENT)))))));
+    }
+
+    private static int findStumps(CommandContext<CommandSource> context, int radius) {
+        Long2ByteMap stumps = getStumps(context.getSource(), radius);
+        int numChops = 0;
+        for (byte chops : stumps.values()) {
+            numChops += chops;
+        }
+
+        context.getSource().sendFeedback(new StringTextComponent(String.format(
+                "Found %d chopped blocks with %d chops within %d blocks",
+                stumps.size(),
+                numChops,
+                radius
+        )), false);
+
+        return stumps.size();
+    }
+
+    private static int clearStumps(CommandContext<CommandSource> context, int radius) {
+        ServerWorld world = context.getSource().getWorld();
+
+        // Removing blocks updates the index, so copy the positions first
+        LongArrayList positions = new LongArrayList(getStumps(context.getSource(), radius).keySet());
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (int i = 0, n = positions.size(); i < n; ++i) {
+            long packedPos = positions.getLong(i);
+            world.setBlockState(pos.setPos(BlockPos.unpackX(packedPos), BlockPos.unpackY(packedPos), BlockPos.unpackZ(packedPos)), Blocks.AIR.getDefaultState());
+        }
+
+        context.getSource().sendFeedback(new StringTextComponent(String.format(
+                "Removed %d chopped blocks within %d blocks",
+                positions.size(),
+                radius
+        )), true);
+
+        return positions.size();
+    }
+
+    private static Long2ByteMap getStumps(CommandSource source, int radius) {
+        BlockPos center = new BlockPos(source.getPos());
+        MutableBoundingBox box = new MutableBoundingBox(
+                center.getX() - radius, 0, center.getZ() - radius,
+                center.getX() + radius, source.getWorld().getHeight() - 1, center.getZ() + radius
+        );
+        return ChunkChopIndex.getChoppedBlocks(source.getWorld(), box);
+    }
+
+}
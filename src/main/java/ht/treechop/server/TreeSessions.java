@@ -0,0 +1,241 @@
+package ht.treechop.server;
+
+import ht.treechop.TreeChopMod;
+import ht.treechop.common.util.ChopUtil;
+import ht.treechop.common.util.TreeCache;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MutableBoundingBox;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.world.BlockEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
+import net.minecraftforge.fml.event.server.FMLServerStartingEvent;
+import net.minecraftforge.fml.event.server.FMLServerStoppingEvent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Remembers the trees that players are chopping, so that each chop on a tree that is not ready to fall does not have
+ * to detect the whole tree again. A tree is forgotten when a block inside its bounds changes, other than one of its logs
+ * being chopped, and after a while in case blocks were changed without notifying their neighbors.
+ * <p>
+ * Trees are indexed by the chunk sections their bounds overlap, so that a block change only looks at the trees near
+ * it.
+ */
+@EventBusSubscriber(modid = TreeChopMod.MOD_ID)
+public class TreeSessions {
+
+    private static final int MAX_SESSION_AGE_TICKS = 600;
+    private static final int MAX_NUM_CACHED_BLOCKS = 65536;
+
+    private static final Map<IWorld, WorldSessions> worlds = new HashMap<>();
+
+    private static final TreeCache CACHE = new TreeCache() {
+        @Override
+        public Set<BlockPos> getTreeBlocks(World world, BlockPos pos, AtomicBoolean hasLeaves) {
+            return (world instanceof ServerWorld) ? TreeSessions.getTreeBlocks((ServerWorld) world, pos, hasLeaves) : null;
+        }
+
+        @Override
+        public void put(World world, Set<BlockPos> treeBlocks, boolean hasLeaves) {
+            if (world instanceof ServerWorld) {
+                TreeSessions.put((ServerWorld) world, treeBlocks, hasLeaves);
+            }
+        }
+    };
+
+    /**
+     * @param hasLeaves set to whether the remembered tree has leaves
+     * @return a copy of the logs of the remembered tree that contains {@code pos}, or {@code null} if there is none
+     */
+    public static Set<BlockPos> getTreeBlocks(ServerWorld world, BlockPos pos, AtomicBoolean hasLeaves) {
+        WorldSessions worldSessions = worlds.get(world);
+        if (worldSessions == null) {
+            return null;
+        }
+
+        Session session = worldSessions.byLog.get(pos.toLong());
+        if (session == null) {
+            return null;
+        } else if (session.isExpired(world.getGameTime())) {
+            worldSessions.remove(session);
+            return null;
+        }
+
+        hasLeaves.set(session.hasLeaves);
+        return new HashSet<>(session.treeBlocks);
+    }
+
+    public static void put(ServerWorld world, Set<BlockPos> treeBlocks, boolean hasLeaves) {
+        if (treeBlocks.isEmpty() || treeBlocks.size() > MAX_NUM_CACHED_BLOCKS) {
+            return;
+        }
+
+        WorldSessions worldSessions = worlds.computeIfAbsent(world, w -> new WorldSessions());
+        while (worldSessions.byLog.size() + treeBlocks.size() > MAX_NUM_CACHED_BLOCKS && !worldSessions.byAge.isEmpty()) {
+            worldSessions.remove(worldSessions.byAge.poll());
+        }
+
+        worldSessions.add(new Session(new HashSet<>(treeBlocks), hasLeaves, world.getGameTime()));
+    }
+
+    @SubscribeEvent
+    public static void onNeighborNotify(BlockEvent.NeighborNotifyEvent event) {
+        WorldSessions worldSessions = worlds.get(event.getWorld());
+        if (worldSessions == null) {
+            return;
+        }
+
+        BlockPos pos = event.getPos();
+        List<Session> sessions = worldSessions.bySection.get(getSectionKey(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4));
+        if (sessions == null) {
+            return;
+        }
+
+        long packedPos = pos.toLong();
+        boolean isLog = ChopUtil.isBlockALog(event.getState());
+        for (int i = sessions.size() - 1; i >= 0; --i) {
+            Session session = sessions.get(i);
+            if (session.bounds.isVecInside(pos) && !(isLog && session.logs.contains(packedPos))) {
+                worldSessions.remove(session);
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public static void onWorldTick(TickEvent.WorldTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+
+        WorldSessions worldSessions = worlds.get(event.world);
+        if (worldSessions != null) {
+            worldSessions.removeExpired(event.world.getGameTime());
+        }
+    }
+
+    @SubscribeEvent
+    public static void onWorldUnload(WorldEvent.Unload event) {
+        worlds.remove(event.getWorld());
+    }
+
+    @SubscribeEvent
+    public static void onServerStarting(FMLServerStartingEvent event) {
+        ChopUtil.setTreeCache(CACHE);
+    }
+
+    @SubscribeEvent
+    public static void onServerStopping(FMLServerStoppingEvent event) {
+        ChopUtil.setTreeCache(TreeCache.NONE);
+        worlds.clear();
+    }
+
+    private static long getSectionKey(int chunkX, int sectionY, int chunkZ) {
+        return BlockPos.pack(chunkX, sectionY, chunkZ);
+    }
+
+    private static class WorldSessions {
+        // Removed sessions are left here until they reach the front
+        private final Deque<Session> byAge = new ArrayDeque<>();
+        private final Long2ObjectOpenHashMap<Session> byLog = new Long2ObjectOpenHashMap<>();
+        private final Long2ObjectOpenHashMap<List<Session>> bySection = new Long2ObjectOpenHashMap<>();
+
+        public void add(Session session) {
+            byAge.add(session);
+            for (long log : session.logs) {
+                Session replaced = byLog.put(log, session);
+                if (replaced != null && replaced != session) {
+                    remove(replaced);
+                    byLog.put(log, session);
+                }
+            }
+            for (int i = 0, n = session.sections.size(); i < n; ++i) {
+                bySection.computeIfAbsent(session.sections.getLong(i), key -> new ArrayList<>()).add(session);
+            }
+        }
+
+        public void remove(Session session) {
+            if (session.removed) {
+                return;
+            }
+
+            session.removed = true;
+            for (long log : session.logs) {
+                byLog.remove(log, session);
+            }
+            for (int i = 0, n = session.sections.size(); i < n; ++i) {
+                long key = session.sections.getLong(i);
+                List<Session> sessions = bySection.get(key);
+                if (sessions != null) {
+                    sessions.remove(session);
+                    if (sessions.isEmpty()) {
+                        bySection.remove(key);
+                    }
+                }
+            }
+        }
+
+        public void removeExpired(long time) {
+            while (!byAge.isEmpty() && (byAge.peek().removed || byAge.peek().isExpired(time))) {
+                remove(byAge.poll());
+            }
+        }
+    }
+
+    private static class Session {
+        private final Set<BlockPos> treeBlocks;
+        private final LongOpenHashSet logs = new LongOpenHashSet();
+        private final LongArrayList sections = new LongArrayList();
+        private final boolean hasLeaves;
+        private final long creationTime;
+        private final MutableBoundingBox bounds;
+        private boolean removed = false;
+
+        public Session(Set<BlockPos> treeBlocks, boolean hasLeaves, long creationTime) {
+            this.treeBlocks = treeBlocks;
+            this.hasLeaves = hasLeaves;
+            this.creationTime = creationTime;
+
+            BlockPos first = treeBlocks.iterator().next();
+            MutableBoundingBox box = new MutableBoundingBox(first, first);
+            for (BlockPos pos : treeBlocks) {
+                logs.add(pos.toLong());
+                box.expandTo(new MutableBoundingBox(pos, pos));
+            }
+
+            // Include the neighbors, where new logs or leaves would change the tree
+            this.bounds = new MutableBoundingBox(
+                    box.minX - 1, box.minY - 1, box.minZ - 1,
+                    box.maxX + 1, box.maxY + 1, box.maxZ + 1
+            );
+
+            for (int chunkX = bounds.minX >> 4; chunkX <= bounds.maxX >> 4; ++chunkX) {
+                for (int sectionY = bounds.minY >> 4; sectionY <= bounds.maxY >> 4; ++sectionY) {
+                    for (int chunkZ = bounds.minZ >> 4; chunkZ <= bounds.maxZ >> 4; ++chunkZ) {
+                        sections.add(getSectionKey(chunkX, sectionY, chunkZ));
+                    }
+                }
+            }
+        }
+
+        public boolean isExpired(long time) {
+            return time - creationTime > MAX_SESSION_AGE_TICKS;
+        }
+    }
+
+}
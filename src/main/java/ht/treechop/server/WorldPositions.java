@@ -0,0 +1,41 @@
+package ht.treechop.server;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Block positions grouped by world, for checking on every break event whether a block is waiting on something
+ * without looking through everything that is waiting.
+ */
+class WorldPositions {
+
+    private final Map<World, LongOpenHashSet> positions = new HashMap<>();
+
+    public void add(World world, BlockPos pos) {
+        positions.computeIfAbsent(world, w -> new LongOpenHashSet()).add(pos.toLong());
+    }
+
+    public void remove(World world, BlockPos pos) {
+        LongOpenHashSet worldPositions = positions.get(world);
+        if (worldPositions != null) {
+            worldPositions.remove(pos.toLong());
+            if (worldPositions.isEmpty()) {
+                positions.remove(world);
+            }
+        }
+    }
+
+    public boolean contains(World world, BlockPos pos) {
+        LongOpenHashSet worldPositions = positions.get(world);
+        return worldPositions != null && worldPositions.contains(pos.toLong());
+    }
+
+    public void clear() {
+        positions.clear();
+    }
+
+}
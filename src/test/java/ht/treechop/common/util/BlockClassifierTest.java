@@ -0,0 +1,89 @@
+package ht.treechop.common.util;
+
+import com.google.common.collect.ImmutableSet;
+import ht.treechop.benchmark.BenchmarkSetup;
+import ht.treechop.benchmark.SyntheticTrees;
+import ht.treechop.common.config.ConfigHandler;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.LeavesBlock;
+import net.minecraft.tags.ITag;
+import net.minecraft.tags.Tag;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockClassifierTest {
+
+    private static BlockState OAK_LOG;
+    private static BlockState BIRCH_LOG;
+    private static BlockState OAK_LEAVES;
+    private static BlockState PERSISTENT_OAK_LEAVES;
+
+    @BeforeAll
+    static void setUp() {
+        // Blocks can only be used once the registries are set up
+        BenchmarkSetup.init();
+        OAK_LOG = Blocks.OAK_LOG.getDefaultState();
+        BIRCH_LOG = Blocks.BIRCH_LOG.getDefaultState();
+        OAK_LEAVES = Blocks.OAK_LEAVES.getDefaultState();
+        PERSISTENT_OAK_LEAVES = OAK_LEAVES.with(LeavesBlock.PERSISTENT, true);
+    }
+
+    @AfterEach
+    void restoreTags() {
+        BlockClassifier.update(ConfigHandler.blockTagForDetectingLogs, ConfigHandler.blockTagForDetectingLeaves, ConfigHandler.ignorePersistentLeaves);
+    }
+
+    private static ITag<Block> tagOf(Block... blocks) {
+        return Tag.getTagFromContents(ImmutableSet.copyOf(blocks));
+    }
+
+    @Test
+    void classifiesFromTags() {
+        BlockClassifier.update(tagOf(Blocks.OAK_LOG), tagOf(Blocks.OAK_LEAVES), false);
+
+        assertTrue(BlockClassifier.is(OAK_LOG, BlockClassifier.LOG));
+        assertFalse(BlockClassifier.is(BIRCH_LOG, BlockClassifier.LOG));
+        assertTrue(BlockClassifier.is(OAK_LEAVES, BlockClassifier.LEAVES));
+        assertTrue(BlockClassifier.is(OAK_LEAVES, BlockClassifier.LEAVES_BLOCK_CLASS));
+        assertFalse(BlockClassifier.is(OAK_LOG, BlockClassifier.LEAVES));
+    }
+
+    @Test
+    void tagReloadReplacesClassifications() {
+        BlockClassifier.update(tagOf(Blocks.OAK_LOG), tagOf(Blocks.OAK_LEAVES), false);
+        BlockClassifier.update(tagOf(Blocks.BIRCH_LOG), tagOf(Blocks.BIRCH_LEAVES), false);
+
+        assertFalse(BlockClassifier.is(OAK_LOG, BlockClassifier.LOG));
+        assertTrue(BlockClassifier.is(BIRCH_LOG, BlockClassifier.LOG));
+        assertFalse(BlockClassifier.is(OAK_LEAVES, BlockClassifier.LEAVES));
+        assertTrue(BlockClassifier.is(Blocks.BIRCH_LEAVES.getDefaultState(), BlockClassifier.LEAVES));
+
+        // Not from tags, so unchanged
+        assertTrue(BlockClassifier.is(OAK_LEAVES, BlockClassifier.LEAVES_BLOCK_CLASS));
+    }
+
+    @Test
+    void persistentLeavesAreOnlyLeavesIfNotIgnored() {
+        BlockClassifier.update(tagOf(Blocks.OAK_LOG), tagOf(Blocks.OAK_LEAVES), true);
+        assertThat(BlockClassifier.get(PERSISTENT_OAK_LEAVES) & (BlockClassifier.LEAVES | BlockClassifier.PERSISTENT_LEAVES), is((int) BlockClassifier.PERSISTENT_LEAVES));
+        assertTrue(BlockClassifier.is(OAK_LEAVES, BlockClassifier.LEAVES));
+
+        BlockClassifier.update(tagOf(Blocks.OAK_LOG), tagOf(Blocks.OAK_LEAVES), false);
+        assertTrue(BlockClassifier.is(PERSISTENT_OAK_LEAVES, BlockClassifier.LEAVES));
+    }
+
+    @Test
+    void choppedLogsAreChoppable() {
+        assertTrue(BlockClassifier.is(SyntheticTrees.CHOPPED_LOG.getDefaultState(), BlockClassifier.CHOPPABLE_BLOCK));
+        assertFalse(BlockClassifier.is(OAK_LOG, BlockClassifier.CHOPPABLE_BLOCK));
+    }
+
+}
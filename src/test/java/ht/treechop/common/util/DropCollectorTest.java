@@ -0,0 +1,82 @@
+package ht.treechop.common.util;
+
+import ht.treechop.benchmark.BenchmarkSetup;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class DropCollectorTest {
+
+    @BeforeAll
+    static void setUp() {
+        BenchmarkSetup.init();
+    }
+
+    @Test
+    void mergesEqualItems() {
+        DropCollector collector = new DropCollector(null);
+        collector.add(new ItemStack(Items.OAK_LOG, 3));
+        collector.add(new ItemStack(Items.OAK_LOG, 4));
+
+        List<ItemStack> drops = collector.getDrops();
+        assertThat(drops.size(), is(1));
+        assertThat(drops.get(0).getItem(), is(Items.OAK_LOG));
+        assertThat(drops.get(0).getCount(), is(7));
+    }
+
+    @Test
+    void keepsDifferentItemsApart() {
+        DropCollector collector = new DropCollector(null);
+        collector.add(new ItemStack(Items.OAK_LOG, 1));
+        collector.add(new ItemStack(Items.STICK, 1));
+        collector.add(new ItemStack(Items.OAK_LOG, 1));
+
+        List<ItemStack> drops = collector.getDrops();
+        assertThat(drops.size(), is(2));
+        assertThat(drops.get(0).getCount(), is(2));
+        assertThat(drops.get(1).getItem(), is(Items.STICK));
+    }
+
+    @Test
+    void keepsItemsWithDifferentTagsApart() {
+        ItemStack named = new ItemStack(Items.OAK_LOG, 1);
+        named.getOrCreateTag().putString("name", "a");
+
+        DropCollector collector = new DropCollector(null);
+        collector.add(new ItemStack(Items.OAK_LOG, 1));
+        collector.add(named);
+
+        assertThat(collector.getDrops().size(), is(2));
+    }
+
+    @Test
+    void splitsFullStacks() {
+        DropCollector collector = new DropCollector(null);
+        collector.add(new ItemStack(Items.OAK_LOG, 40));
+        collector.add(new ItemStack(Items.OAK_LOG, 40));
+        collector.add(new ItemStack(Items.OAK_LOG, 60));
+
+        List<ItemStack> drops = collector.getDrops();
+        assertThat(drops.size(), is(3));
+        assertThat(drops.get(0).getCount(), is(64));
+        assertThat(drops.get(1).getCount(), is(64));
+        assertThat(drops.get(2).getCount(), is(12));
+    }
+
+    @Test
+    void doesNotKeepTheAddedStack() {
+        ItemStack stack = new ItemStack(Items.OAK_LOG, 2);
+        DropCollector collector = new DropCollector(null);
+        collector.add(stack);
+        stack.setCount(1);
+
+        assertThat(collector.getDrops().get(0).getCount(), is(2));
+    }
+
+}
@@ -0,0 +1,123 @@
+package ht.treechop.common.util;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FloodFillTest {
+
+    private static LongOpenHashSet line(int fromX, int toX) {
+        LongOpenHashSet positions = new LongOpenHashSet();
+        for (int x = fromX; x <= toX; ++x) {
+            positions.add(BlockPos.pack(x, 0, 0));
+        }
+        return positions;
+    }
+
+    @Test
+    void searchVisitsOnlyConnectedBlocks() {
+        LongOpenHashSet blocks = line(0, 4);
+        blocks.add(BlockPos.pack(6, 0, 0));
+
+        try (FloodFill fill = FloodFill.acquire()) {
+            fill.add(BlockPos.pack(0, 0, 0));
+            int depth = fill.search(pos -> BlockNeighbors.ADJACENTS, (pos, d) -> blocks.contains(pos), 100);
+
+            assertThat(depth, is(4));
+            assertThat(fill.getVisited(), is(line(0, 4)));
+            assertFalse(fill.contains(BlockPos.pack(6, 0, 0)));
+        }
+    }
+
+    @Test
+    void conditionIsGivenTheDepth() {
+        LongOpenHashSet blocks = line(0, 4);
+
+        try (FloodFill fill = FloodFill.acquire()) {
+            fill.add(BlockPos.pack(0, 0, 0));
+            fill.search(
+                    pos -> BlockNeighbors.ADJACENTS,
+                    (pos, depth) -> {
+                        if (blocks.contains(pos)) {
+                            assertThat(depth, is(BlockPos.unpackX(pos)));
+                            return true;
+                        } else {
+                            return false;
+                        }
+                    },
+                    100
+            );
+        }
+    }
+
+    @Test
+    void searchStopsAtMaxNumBlocks() {
+        try (FloodFill fill = FloodFill.acquire()) {
+            fill.add(BlockPos.pack(0, 0, 0));
+            fill.search(pos -> BlockNeighbors.ADJACENTS, (pos, depth) -> true, 10);
+
+            assertThat(fill.size(), is(10));
+        }
+    }
+
+    @Test
+    void stopConditionEndsTheSearchEarly() {
+        LongOpenHashSet blocks = line(0, 10);
+        long stopPos = BlockPos.pack(3, 0, 0);
+
+        try (FloodFill fill = FloodFill.acquire()) {
+            fill.add(BlockPos.pack(0, 0, 0));
+            fill.search(pos -> BlockNeighbors.ADJACENTS, (pos, depth) -> blocks.contains(pos), 100, () -> fill.contains(stopPos));
+
+            assertThat(fill.getVisited(), is(line(0, 3)));
+        }
+    }
+
+    @Test
+    void visitedBlocksAreNotSearchedFrom() {
+        LongOpenHashSet blocks = line(-4, 4);
+
+        try (FloodFill fill = FloodFill.acquire()) {
+            fill.addVisited(BlockPos.pack(-1, 0, 0));
+            fill.add(BlockPos.pack(0, 0, 0));
+            fill.search(pos -> BlockNeighbors.ADJACENTS, (pos, depth) -> blocks.contains(pos), 100);
+
+            LongOpenHashSet expected = line(0, 4);
+            expected.add(BlockPos.pack(-1, 0, 0));
+            assertThat(fill.getVisited(), is(expected));
+        }
+    }
+
+    @Test
+    void nestedAcquireGivesAnotherFloodFill() {
+        try (FloodFill outer = FloodFill.acquire()) {
+            outer.add(BlockPos.pack(0, 0, 0));
+            try (FloodFill inner = FloodFill.acquire()) {
+                assertThat(inner, is(not(sameInstance(outer))));
+                assertThat(inner.size(), is(0));
+            }
+            assertTrue(outer.contains(BlockPos.pack(0, 0, 0)));
+        }
+    }
+
+    @Test
+    void closeClearsForTheNextSearch() {
+        try (FloodFill fill = FloodFill.acquire()) {
+            fill.add(BlockPos.pack(0, 0, 0));
+            fill.search(pos -> BlockNeighbors.ADJACENTS, (pos, depth) -> true, 20000);
+        }
+
+        try (FloodFill fill = FloodFill.acquire()) {
+            assertThat(fill.size(), is(0));
+            assertThat(fill.search(pos -> BlockNeighbors.ADJACENTS, (pos, depth) -> true, 100), is(0));
+        }
+    }
+
+}
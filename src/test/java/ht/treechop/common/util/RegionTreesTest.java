@@ -0,0 +1,120 @@
+package ht.treechop.common.util;
+
+import ht.treechop.benchmark.BenchmarkSetup;
+import ht.treechop.benchmark.SyntheticTrees;
+import ht.treechop.benchmark.SyntheticWorld;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MutableBoundingBox;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionTreesTest {
+
+    private static final int Y0 = SyntheticWorld.GROUND_Y;
+
+    @BeforeAll
+    static void setUp() {
+        BenchmarkSetup.init();
+    }
+
+    private static MutableBoundingBox box(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return new MutableBoundingBox(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    private static List<RegionTrees.Tree> findSortedByX(SyntheticWorld world, MutableBoundingBox region, boolean mustHaveLeaves) {
+        List<RegionTrees.Tree> trees = RegionTrees.find(world, region, mustHaveLeaves);
+        trees.sort(Comparator.comparingInt(tree -> BlockPos.unpackX(tree.getLogs().getLong(0))));
+        return trees;
+    }
+
+    @Test
+    void findsSeparateTrees() {
+        SyntheticWorld world = new SyntheticWorld();
+        SyntheticTrees.oak(world, 0, 0);
+        SyntheticTrees.oak(world, 10, 0);
+        world.updateLeavesDistances();
+
+        List<RegionTrees.Tree> trees = findSortedByX(world, box(-5, Y0, -5, 15, Y0 + 10, 5), true);
+
+        assertThat(trees.size(), is(2));
+        assertThat(trees.get(0).getLogBlocks().contains(new BlockPos(0, Y0, 0)), is(true));
+        assertThat(trees.get(1).getLogBlocks().contains(new BlockPos(10, Y0, 0)), is(true));
+        for (RegionTrees.Tree tree : trees) {
+            assertThat(tree.getLogs().size(), is(5));
+            assertTrue(tree.hasLeaves());
+            assertFalse(tree.isTruncated());
+        }
+    }
+
+    @Test
+    void overlappingCanopiesShareOutLeaves() {
+        SyntheticWorld world = new SyntheticWorld();
+        SyntheticTrees.oak(world, 0, 0);
+        SyntheticTrees.oak(world, 4, 0);
+        world.updateLeavesDistances();
+
+        List<RegionTrees.Tree> trees = findSortedByX(world, box(-5, Y0, -5, 9, Y0 + 10, 5), true);
+        assertThat(trees.size(), is(2));
+
+        LongOpenHashSet leavesOfFirst = new LongOpenHashSet(trees.get(0).getLeaves());
+        LongOpenHashSet leavesOfSecond = new LongOpenHashSet(trees.get(1).getLeaves());
+        assertThat(leavesOfFirst.size(), is(trees.get(0).getLeaves().size()));
+        assertThat(leavesOfSecond.size(), is(trees.get(1).getLeaves().size()));
+        for (long pos : leavesOfFirst) {
+            assertFalse(leavesOfSecond.contains(pos));
+        }
+
+        // Leaves on the far side of each tree go to that tree
+        assertTrue(leavesOfFirst.contains(BlockPos.pack(-2, Y0 + 3, 0)));
+        assertTrue(leavesOfSecond.contains(BlockPos.pack(6, Y0 + 3, 0)));
+    }
+
+    @Test
+    void followsTreesOutsideTheRegion() {
+        SyntheticWorld world = new SyntheticWorld();
+        SyntheticTrees.oak(world, 0, 0);
+        world.updateLeavesDistances();
+
+        List<RegionTrees.Tree> trees = findSortedByX(world, box(-1, Y0, -1, 1, Y0 + 1, 1), true);
+
+        assertThat(trees.size(), is(1));
+        assertThat(trees.get(0).getLogs().size(), is(5));
+        assertTrue(trees.get(0).hasLeaves());
+    }
+
+    @Test
+    void joinsLogsDiagonallyBelow() {
+        SyntheticWorld world = new SyntheticWorld();
+        SyntheticTrees.oak(world, 0, 0);
+        world.set(1, Y0 - 1, 1, Blocks.OAK_LOG.getDefaultState());
+        world.updateLeavesDistances();
+
+        List<RegionTrees.Tree> trees = findSortedByX(world, box(-3, Y0 - 1, -3, 3, Y0 + 10, 3), true);
+
+        assertThat(trees.size(), is(1));
+        assertThat(trees.get(0).getLogs().size(), is(6));
+    }
+
+    @Test
+    void leavesOutLeaflessLogsIfTreesMustHaveLeaves() {
+        SyntheticWorld world = new SyntheticWorld();
+        for (int dy = 0; dy < 3; ++dy) {
+            world.set(0, Y0 + dy, 0, Blocks.OAK_LOG.getDefaultState());
+        }
+
+        MutableBoundingBox region = box(-2, Y0, -2, 2, Y0 + 5, 2);
+        assertThat(RegionTrees.find(world, region, true).size(), is(0));
+        assertThat(RegionTrees.find(world, region, false).size(), is(1));
+    }
+
+}
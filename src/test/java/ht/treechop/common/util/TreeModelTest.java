@@ -0,0 +1,148 @@
+package ht.treechop.common.util;
+
+import ht.treechop.benchmark.BenchmarkSetup;
+import ht.treechop.benchmark.SyntheticTrees;
+import ht.treechop.benchmark.SyntheticWorld;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TreeModelTest {
+
+    private static final BlockPos BASE = new BlockPos(0, SyntheticWorld.GROUND_Y, 0);
+
+    @BeforeAll
+    static void setUp() {
+        BenchmarkSetup.init();
+    }
+
+    private static Set<BlockPos> scan(SyntheticWorld world, ScannedLeaves scannedLeaves) {
+        return ChopUtil.scanTreeBlocks(world, BASE, pos -> ChopUtil.isBlockALog(world, pos), new AtomicBoolean(false), scannedLeaves);
+    }
+
+    private static LongArrayList pack(Collection<BlockPos> positions) {
+        LongArrayList packed = new LongArrayList(positions.size());
+        positions.forEach(pos -> packed.add(pos.toLong()));
+        return packed;
+    }
+
+    private static SyntheticWorld leaflessColumn() {
+        SyntheticWorld world = new SyntheticWorld();
+        for (int dy = 0; dy < 5; ++dy) {
+            world.set(BASE.getX(), BASE.getY() + dy, BASE.getZ(), Blocks.OAK_LOG.getDefaultState());
+        }
+        return world;
+    }
+
+    @Test
+    void scannedLeaflessLogsAreKnownToBeLeafless() {
+        SyntheticWorld world = leaflessColumn();
+        ScannedLeaves scannedLeaves = new ScannedLeaves();
+        Set<BlockPos> logs = scan(world, scannedLeaves);
+
+        assertThat(logs.size(), is(5));
+        assertTrue(TreeModel.build(pack(logs), scannedLeaves).isKnownToBeLeafless());
+        assertTrue(ChopUtil.getTreeLeaves(world, logs, scannedLeaves).isEmpty());
+    }
+
+    @Test
+    void treeWithLeavesIsNotLeafless() {
+        SyntheticWorld world = new SyntheticWorld();
+        SyntheticTrees.oak(world, BASE.getX(), BASE.getZ());
+        world.updateLeavesDistances();
+
+        ScannedLeaves scannedLeaves = new ScannedLeaves();
+        Set<BlockPos> logs = scan(world, scannedLeaves);
+
+        assertFalse(TreeModel.build(pack(logs), scannedLeaves).isKnownToBeLeafless());
+        assertFalse(ChopUtil.getTreeLeaves(world, logs, scannedLeaves).isEmpty());
+    }
+
+    @Test
+    void logsThatWereNotScannedMightHaveLeaves() {
+        SyntheticWorld world = leaflessColumn();
+        ScannedLeaves scannedLeaves = new ScannedLeaves();
+        LongArrayList logs = pack(scan(world, scannedLeaves));
+        logs.add(BASE.east(8).toLong());
+
+        assertFalse(TreeModel.build(logs, scannedLeaves).isKnownToBeLeafless());
+    }
+
+    @Test
+    void nothingIsKnownWithoutScanning() {
+        assertFalse(TreeModel.build(pack(scan(leaflessColumn(), null)), null).isKnownToBeLeafless());
+        assertFalse(TreeModel.build(pack(scan(leaflessColumn(), null)), new ScannedLeaves()).isKnownToBeLeafless());
+    }
+
+    @Test
+    void logsAreOrderedFromTheTopDown() {
+        SyntheticWorld world = new SyntheticWorld();
+        SyntheticTrees.oak(world, BASE.getX(), BASE.getZ());
+        Set<BlockPos> logs = scan(world, null);
+
+        long[] logsTopDown = TreeModel.build(pack(logs), null).getLogsTopDown();
+
+        assertThat(logsTopDown.length, is(logs.size()));
+        assertThat(new LongOpenHashSet(logsTopDown), is(new LongOpenHashSet(pack(logs))));
+        for (int i = 1; i < logsTopDown.length; ++i) {
+            assertTrue(BlockPos.unpackY(logsTopDown[i - 1]) >= BlockPos.unpackY(logsTopDown[i]));
+        }
+    }
+
+    @Test
+    void columnsOnTheLowestLayerAreTrunks() {
+        LongArrayList logs = new LongArrayList();
+        for (int dy = 0; dy < 4; ++dy) {
+            logs.add(BASE.up(dy).toLong());
+            logs.add(BASE.east().up(dy).toLong());
+        }
+        logs.add(BASE.east().up(4).toLong());
+
+        TreeModel model = TreeModel.build(logs, null);
+
+        assertThat(model.getBase().length, is(2));
+        assertThat(model.getNumBranches(), is(0));
+        for (int i = 0; i < model.getBase().length; ++i) {
+            int expectedTop = BlockPos.unpackX(model.getBase()[i]) == BASE.getX() ? BASE.getY() + 3 : BASE.getY() + 4;
+            assertThat(model.getTrunkTops()[i], is(expectedTop));
+        }
+    }
+
+    @Test
+    void logsOffTheTrunkAreGroupedIntoBranches() {
+        LongArrayList logs = new LongArrayList();
+        for (int dy = 0; dy < 6; ++dy) {
+            logs.add(BASE.up(dy).toLong());
+        }
+        // Two logs reaching west from the trunk, and one log diagonally east of it higher up
+        logs.add(BASE.up(3).west().toLong());
+        logs.add(BASE.up(4).west(2).toLong());
+        logs.add(BASE.up(5).east().north().toLong());
+
+        TreeModel model = TreeModel.build(logs, null);
+
+        assertThat(model.getBase().length, is(1));
+        assertThat(model.getTrunkTops()[0], is(BASE.getY() + 5));
+        assertThat(model.getNumBranches(), is(2));
+        assertThat(model.getBranchLogs().length, is(3));
+        assertThat(model.getBranchStart(model.getNumBranches()), is(3));
+
+        // Each branch starts with its highest log
+        assertThat(model.getBranchLogs()[model.getBranchStart(0)], is(BASE.up(5).east().north().toLong()));
+        assertThat(model.getBranchLogs()[model.getBranchStart(1)], is(BASE.up(4).west(2).toLong()));
+        assertThat(model.getBranchStart(2) - model.getBranchStart(1), is(2));
+    }
+
+}
@@ -0,0 +1,58 @@
+package ht.treechop.server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    @Test
+    void startsWithAFullBurst() {
+        ChopAdmission.TokenBucket bucket = new ChopAdmission.TokenBucket(0);
+        assertTrue(bucket.tryTake(0, 0.5, 3));
+        assertTrue(bucket.tryTake(0, 0.5, 3));
+        assertTrue(bucket.tryTake(0, 0.5, 3));
+        assertFalse(bucket.tryTake(0, 0.5, 3));
+    }
+
+    @Test
+    void refillsAtTheGivenRate() {
+        ChopAdmission.TokenBucket bucket = new ChopAdmission.TokenBucket(0);
+        assertTrue(bucket.tryTake(0, 0.5, 1));
+        assertFalse(bucket.tryTake(0, 0.5, 1));
+
+        assertFalse(bucket.tryTake(1, 0.5, 1));
+        assertTrue(bucket.tryTake(2, 0.5, 1));
+        assertFalse(bucket.tryTake(2, 0.5, 1));
+    }
+
+    @Test
+    void refillStopsAtTheBurst() {
+        ChopAdmission.TokenBucket bucket = new ChopAdmission.TokenBucket(0);
+        assertTrue(bucket.tryTake(0, 1, 2));
+        assertTrue(bucket.tryTake(0, 1, 2));
+        assertFalse(bucket.tryTake(0, 1, 2));
+
+        assertTrue(bucket.tryTake(1000, 1, 2));
+        assertTrue(bucket.tryTake(1000, 1, 2));
+        assertFalse(bucket.tryTake(1000, 1, 2));
+    }
+
+    @Test
+    void loweredBurstTakesEffectImmediately() {
+        ChopAdmission.TokenBucket bucket = new ChopAdmission.TokenBucket(0);
+        assertTrue(bucket.tryTake(0, 1, 5));
+        assertTrue(bucket.tryTake(0, 1, 1));
+        assertFalse(bucket.tryTake(0, 1, 1));
+    }
+
+    @Test
+    void timeGoingBackwardsDoesNotAddTokens() {
+        ChopAdmission.TokenBucket bucket = new ChopAdmission.TokenBucket(100);
+        assertTrue(bucket.tryTake(100, 1, 1));
+        assertTrue(bucket.tryTake(101, 1, 1));
+        assertFalse(bucket.tryTake(50, 1, 1));
+    }
+
+}